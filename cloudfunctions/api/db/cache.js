@@ -0,0 +1,145 @@
+const { createClient } = require("redis");
+const crypto = require("crypto");
+
+// Optional read cache in front of Postgres; without REDIS_HOST every call goes to the loader
+const envInt = (name, fallback) => {
+  const value = parseInt(process.env[name], 10);
+  return Number.isNaN(value) ? fallback : value;
+};
+
+const LIST_TTL_SECONDS = envInt("CACHE_LIST_TTL_SECONDS", 10);
+const DETAIL_TTL_SECONDS = envInt("CACHE_DETAIL_TTL_SECONDS", 300);
+
+// How long one caller may hold the rebuild lock, and how long the others wait for its result
+const LOCK_TTL_MS = envInt("CACHE_LOCK_TTL_MS", 2000);
+const LOCK_WAIT_MS = envInt("CACHE_LOCK_WAIT_MS", 1000);
+const LOCK_POLL_MS = 25;
+
+const LIST_GENERATION_KEY = "posts:list:generation";
+
+// How long the first caller of an instance waits for Redis before reading from the database
+const CONNECT_WAIT_MS = envInt("CACHE_CONNECT_WAIT_MS", 1000);
+
+const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+let client;
+let connecting;
+
+// Commands fail immediately while Redis is unreachable instead of queueing until it is back
+// (disableOfflineQueue), so callers fall through to the database while the client reconnects
+const getClient = async () => {
+  if (!process.env.REDIS_HOST) {
+    return null;
+  }
+  if (!client) {
+    client = createClient({
+      url: `redis://${process.env.REDIS_HOST}`,
+      disableOfflineQueue: true,
+      socket: {
+        connectTimeout: 1000,
+        reconnectStrategy: (retries) => Math.min(100 * 2 ** retries, 5000),
+      },
+    });
+    client.on("error", (err) => console.log(err));
+    const ready = new Promise((resolve) => client.once("ready", resolve));
+    client.connect().catch((err) => console.log(err));
+    connecting = Promise.race([ready, sleep(CONNECT_WAIT_MS)]);
+  }
+  await connecting;
+  return client.isReady ? client : null;
+};
+
+// Closes the connection, e.g. at the end of a test or script
+const disconnect = async () => {
+  const current = client;
+  client = undefined;
+  if (current) {
+    await current.disconnect().catch(() => {});
+  }
+};
+
+// Only the token holder may release the lock, so a slow loader never releases someone else's
+const RELEASE_LOCK = `
+  if redis.call("get", KEYS[1]) == ARGV[1] then
+    return redis.call("del", KEYS[1])
+  end
+  return 0`;
+
+// Cache-aside with a per-key SET NX lock: on a miss one caller loads and fills the key while the
+// others poll for its result instead of all hitting the database at once. Only a failing Redis
+// falls back to the loader; loader errors reach the caller and the loader never runs twice.
+const cached = async (key, ttlSeconds, load, { cacheable = () => true } = {}) => {
+  const redis = await getClient();
+  if (!redis) {
+    return load();
+  }
+
+  const lockKey = `lock:${key}`;
+  const token = crypto.randomUUID();
+  let locked;
+  try {
+    const hit = await redis.get(key);
+    if (hit !== null) {
+      return JSON.parse(hit);
+    }
+    locked = await redis.set(lockKey, token, { NX: true, PX: LOCK_TTL_MS });
+  } catch (err) {
+    console.log(err);
+    return load();
+  }
+
+  if (locked) {
+    try {
+      const value = await load();
+      if (cacheable(value)) {
+        await redis.set(key, JSON.stringify(value), { EX: ttlSeconds }).catch((err) => console.log(err));
+      }
+      return value;
+    } finally {
+      await redis.eval(RELEASE_LOCK, { keys: [lockKey], arguments: [token] }).catch((err) => console.log(err));
+    }
+  }
+
+  try {
+    for (let waited = 0; waited < LOCK_WAIT_MS; waited += LOCK_POLL_MS) {
+      await sleep(LOCK_POLL_MS);
+      const filled = await redis.get(key);
+      if (filled !== null) {
+        return JSON.parse(filled);
+      }
+    }
+  } catch (err) {
+    console.log(err);
+  }
+  return load();
+};
+
+// List pages are keyed by a generation counter, so one INCR invalidates every cached page
+const listKey = async (limit, cursor) => {
+  const redis = await getClient();
+  const generation = redis ? (await redis.get(LIST_GENERATION_KEY).catch(() => null)) || 0 : 0;
+  return `posts:list:${generation}:${limit || ""}:${cursor || ""}`;
+};
+
+const detailKey = (id) => `posts:detail:${id}`;
+
+const invalidateLists = async () => {
+  try {
+    const redis = await getClient();
+    if (redis) {
+      await redis.incr(LIST_GENERATION_KEY);
+    }
+  } catch (err) {
+    console.log(err);
+  }
+};
+
+module.exports = {
+  LIST_TTL_SECONDS,
+  DETAIL_TTL_SECONDS,
+  cached,
+  listKey,
+  detailKey,
+  invalidateLists,
+  disconnect,
+};
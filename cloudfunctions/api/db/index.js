@@ -1,8 +1,10 @@
 const Knex = require("knex");
 
-const createTcpPool = async (config) => {
+const { SEARCH_VECTOR, migrationSource } = require("./migrations");
 
-  const dbSocketAddr = process.env.DB_HOST.split(":"); 
+const createTcpPool = (config, host = process.env.DB_HOST, database = process.env.DB_NAME) => {
+
+  const dbSocketAddr = host.split(":"); 
 
   // Create connection to the database
   return Knex({
@@ -10,7 +12,7 @@ const createTcpPool = async (config) => {
     connection: {
       user: process.env.DB_USER, 
       password: process.env.DB_PASS, 
-      database: process.env.DB_NAME, 
+      database: database, 
       host: dbSocketAddr[0], 
       port: dbSocketAddr[1], 
     },
@@ -18,48 +20,232 @@ const createTcpPool = async (config) => {
   });
 };
 
-const createPool = async () => {
+const envInt = (name, fallback) => {
+  const value = parseInt(process.env[name], 10);
+  return Number.isNaN(value) ? fallback : value;
+};
+
+// Pool sizes come from the environment variables CloudFunction sets
+const poolConfig = () => {
   const config = { pool: {} };
-  config.pool.max = 5;
-  config.pool.min = 5;
-  config.pool.acquireTimeoutMillis = 60000;
-  config.pool.idleTimeoutMillis = 600000;
+  config.pool.max = envInt("DB_POOL_MAX", 5);
+  config.pool.min = envInt("DB_POOL_MIN", 0);
+  config.pool.acquireTimeoutMillis = envInt("DB_POOL_ACQUIRE_TIMEOUT_MS", 10000);
+  config.pool.idleTimeoutMillis = envInt("DB_POOL_IDLE_TIMEOUT_MS", 600000);
   config.pool.createRetryIntervalMillis = 200;
-  return createTcpPool(config);
+  return config;
+};
+
+// DB_READ_HOST holds one or more comma-separated replicas; every pool sticks to one of them
+const readHost = () => {
+  const hosts = (process.env.DB_READ_HOST || process.env.DB_HOST).split(",");
+  return hosts[Math.floor(Math.random() * hosts.length)];
+};
+
+// Behind PgBouncer the replicas are a separate database entry of the same pooler
+const readName = () => process.env.DB_READ_NAME || process.env.DB_NAME;
+
+// Logs how long each query waited for a connection as structured JSON, which the stack's
+// log-based metric turns into a poolAcquireMs distribution. POOL_METRIC_SAMPLE_RATE limits volume.
+const instrument = (knex, role) => {
+  const sampleRate = parseFloat(process.env.POOL_METRIC_SAMPLE_RATE || "0.1");
+  const pool = knex.client.pool;
+  if (!pool || !(sampleRate > 0)) {
+    return knex;
+  }
+  const pending = new Map();
+  pool.on("acquireRequest", (eventId) => {
+    if (Math.random() < sampleRate) {
+      pending.set(eventId, process.hrtime.bigint());
+    }
+  });
+  const done = (eventId) => {
+    const start = pending.get(eventId);
+    if (start === undefined) {
+      return;
+    }
+    pending.delete(eventId);
+    console.log(JSON.stringify({
+      severity: "DEBUG",
+      message: "knex pool acquire",
+      pool: role,
+      poolAcquireMs: Number(process.hrtime.bigint() - start) / 1e6,
+      poolUsed: pool.numUsed(),
+      poolPending: pool.numPendingAcquires(),
+    }));
+  };
+  pool.on("acquireSuccess", done);
+  pool.on("acquireFail", done);
+  return knex;
+};
+
+// One pool of each kind per function instance, created on first use and kept across invocations
+let pool;
+let readPool;
+
+const getPool = () => {
+  if (!pool) {
+    pool = instrument(createTcpPool(poolConfig()), "write");
+  }
+  return pool;
 };
 
-const validateSchema = async (pool) => {
-  const hasTable = await pool.schema.hasTable("posts");
-  if (!hasTable) {
-    return pool.schema.createTable("posts", (table) => {
-      table.increments("id").primary();
-      table.timestamp("postedAt", 30).notNullable();
-      table.specificType("author", "VARCHAR(100)").notNullable();
-      table.specificType("content", "VARCHAR(200)").notNullable();
-    });
+const getReadPool = () => {
+  if (!readPool) {
+    const host = readHost();
+    const database = readName();
+    readPool = host === process.env.DB_HOST && database === process.env.DB_NAME
+      ? getPool()
+      : instrument(createTcpPool(poolConfig(), host, database), "read");
   }
+  return readPool;
 };
 
-const createPoolAndValidateSchema = async () =>
-  await createPool()
-    .then(async (pool) => {
-      await validateSchema(pool);
-      return pool;
-    })
-    .catch((err) => {
-      console.log(err);
-      throw err;
-    });
-
-const getAllPosts = async (pool) => {
-    return await pool
+// Reads may reach a replica before the first migration has created the table
+const UNDEFINED_TABLE = "42P01";
+
+// Extensions the migrations rely on, as listed by Storage
+const EXTENSION_NAME = /^[a-z0-9_]+$/;
+
+const createExtensions = async (knex) => {
+  const extensions = (process.env.DB_EXTENSIONS || "").split(",").map((name) => name.trim()).filter(Boolean);
+  for (const extension of extensions) {
+    if (!EXTENSION_NAME.test(extension)) {
+      throw new Error(`Invalid extension name "${extension}" in DB_EXTENSIONS`);
+    }
+    await knex.raw(`CREATE EXTENSION IF NOT EXISTS ${extension}`);
+  }
+  return extensions;
+};
+
+const migrate = async () => {
+  const migrator = createTcpPool({ pool: { min: 0, max: 1 } });
+  try {
+    await createExtensions(migrator);
+    const [batch, applied] = await migrator.migrate.latest({ migrationSource });
+    return { batch, applied };
+  } finally {
+    await migrator.destroy();
+  }
+};
+
+const DEFAULT_PAGE_SIZE = 20;
+const MAX_PAGE_SIZE = 100;
+
+const pageSize = (limit) => {
+  const size = parseInt(limit, 10);
+  if (Number.isNaN(size) || size < 1) {
+    return DEFAULT_PAGE_SIZE;
+  }
+  return Math.min(size, MAX_PAGE_SIZE);
+};
+
+// Cursors are opaque to clients: the (postedAt, id) of the last row of the previous page
+const encodeCursor = (row) =>
+  Buffer.from(JSON.stringify([new Date(row.postedAt).toISOString(), row.id])).toString("base64url");
+
+const decodeCursor = (cursor) => {
+  try {
+    const [postedAt, id] = JSON.parse(Buffer.from(cursor, "base64url").toString("utf8"));
+    if (Number.isNaN(Date.parse(postedAt)) || !Number.isInteger(id)) {
+      return null;
+    }
+    return { postedAt, id };
+  } catch (err) {
+    return null;
+  }
+};
+
+// Keyset pagination over the (postedAt DESC, id DESC) index, newest first
+const getAllPosts = async (pool, { limit, cursor } = {}) => {
+    const size = pageSize(limit);
+    let query = pool
+        .select("id", "postedAt", "author", "content")
+        .from("posts")
+        .orderBy([
+            { column: "postedAt", order: "desc" },
+            { column: "id", order: "desc" },
+        ])
+        .limit(size + 1);
+
+    const after = cursor ? decodeCursor(cursor) : null;
+    if (after) {
+        query = query.whereRaw('("postedAt", id) < (?, ?)', [after.postedAt, after.id]);
+    }
+
+    let rows;
+    try {
+        rows = await query;
+    } catch (err) {
+        if (err.code === UNDEFINED_TABLE) {
+            return { posts: [], nextCursor: null };
+        }
+        throw err;
+    }
+
+    const hasMore = rows.length > size;
+    const posts = hasMore ? rows.slice(0, size) : rows;
+    return {
+        posts,
+        nextCursor: hasMore ? encodeCursor(posts[posts.length - 1]) : null,
+    };
+};
+
+const escapeLike = (value) => value.replace(/[\\%_]/g, (c) => `\\${c}`);
+
+// Newest matches first, with the same keyset cursor as getAllPosts. The full-text condition repeats
+// SEARCH_VECTOR so it uses posts_search_idx, and the author prefix uses posts_author_trgm_idx, so
+// the cost follows the number of matches rather than the size of the table.
+const searchPosts = async (pool, { q, author, limit, cursor } = {}) => {
+    const size = pageSize(limit);
+    let query = pool
         .select("id", "postedAt", "author", "content")
         .from("posts")
-        .orderBy("postedAt", "desc");
+        .orderBy([
+            { column: "postedAt", order: "desc" },
+            { column: "id", order: "desc" },
+        ])
+        .limit(size + 1);
+
+    if (q) {
+        query = query.whereRaw(`(${SEARCH_VECTOR}) @@ websearch_to_tsquery('english', ?)`, [q]);
+    }
+    if (author) {
+        query = query.whereRaw("lower(author) LIKE ?", [`${escapeLike(author.toLowerCase())}%`]);
+    }
+    const after = cursor ? decodeCursor(cursor) : null;
+    if (after) {
+        query = query.whereRaw('("postedAt", id) < (?, ?)', [after.postedAt, after.id]);
+    }
+
+    let rows;
+    try {
+        rows = await query;
+    } catch (err) {
+        if (err.code === UNDEFINED_TABLE) {
+            return { posts: [], nextCursor: null };
+        }
+        throw err;
+    }
+
+    const hasMore = rows.length > size;
+    const posts = hasMore ? rows.slice(0, size) : rows;
+    return {
+        posts,
+        nextCursor: hasMore ? encodeCursor(posts[posts.length - 1]) : null,
+    };
 };
     
 const getPost = async (pool, id) => {
-    result = await pool("posts").where({ id: id })
+    let result;
+    try {
+        result = await pool("posts").where({ id: id })
+    } catch (err) {
+        if (err.code === UNDEFINED_TABLE) {
+            return [];
+        }
+        throw err;
+    }
     if(result.length === 0){
       return [];
     } else {
@@ -75,10 +261,27 @@ const addPost = async (pool, post) => {
     }
 }
 
+// One multi-row insert per batch; rows whose idempotency key already exists are skipped
+const addPosts = async (pool, posts) => {
+    if (posts.length === 0) {
+        return 0;
+    }
+    const rows = await pool("posts")
+        .insert(posts)
+        .onConflict("idempotencyKey")
+        .ignore()
+        .returning("id");
+    return rows.length;
+}
+
 
 module.exports = {
-    createPoolAndValidateSchema,
+    getPool,
+    getReadPool,
+    migrate,
     getAllPosts,
+    searchPosts,
     getPost,
-    addPost
+    addPost,
+    addPosts
 };
\ No newline at end of file
@@ -0,0 +1,71 @@
+// Schema changes, applied in order by `migrate` at deploy time and recorded in knex_migrations.
+
+// Document of GET /posts/search. Queries must use this exact expression to match posts_search_idx.
+const SEARCH_VECTOR =
+  "setweight(to_tsvector('english', content), 'A') || setweight(to_tsvector('simple', author), 'B')";
+
+const migrations = [
+  {
+    name: "001_create_posts",
+    up: async (knex) => {
+      const hasTable = await knex.schema.hasTable("posts");
+      if (!hasTable) {
+        await knex.schema.createTable("posts", (table) => {
+          table.increments("id").primary();
+          table.timestamp("postedAt", 30).notNullable();
+          table.specificType("author", "VARCHAR(100)").notNullable();
+          table.specificType("content", "VARCHAR(200)").notNullable();
+        });
+      }
+    },
+  },
+  {
+    // Backs the keyset pagination of GET /posts; built concurrently so writes are not blocked
+    name: "002_index_posts_posted_at_id",
+    transaction: false,
+    up: async (knex) => {
+      await knex.raw(
+        'CREATE INDEX CONCURRENTLY IF NOT EXISTS posts_posted_at_id_idx ON posts ("postedAt" DESC, id DESC)'
+      );
+    },
+  },
+  {
+    // Deduplicates posts that Pub/Sub delivers more than once; existing rows keep a NULL key
+    name: "003_posts_idempotency_key",
+    transaction: false,
+    up: async (knex) => {
+      await knex.raw('ALTER TABLE posts ADD COLUMN IF NOT EXISTS "idempotencyKey" VARCHAR(64)');
+      await knex.raw(
+        'CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS posts_idempotency_key_idx ON posts ("idempotencyKey")'
+      );
+    },
+  },
+  {
+    // Backs GET /posts/search: a GIN expression index over SEARCH_VECTOR for full-text queries and a
+    // pg_trgm index for author prefixes. pg_trgm is one of the DB_EXTENSIONS `migrate` creates.
+    // Expression indexes leave the table as is, where a stored column would rewrite it.
+    name: "004_posts_search",
+    transaction: false,
+    up: async (knex) => {
+      await knex.raw(`CREATE INDEX CONCURRENTLY IF NOT EXISTS posts_search_idx ON posts USING GIN ((${SEARCH_VECTOR}))`);
+      await knex.raw(
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS posts_author_trgm_idx ON posts USING GIN (lower(author) gin_trgm_ops)"
+      );
+    },
+  },
+];
+
+const migrationSource = {
+  getMigrations: async () => migrations,
+  getMigrationName: (migration) => migration.name,
+  getMigration: async (migration) => ({
+    up: migration.up,
+    down: async () => {},
+    config: { transaction: migration.transaction !== false },
+  }),
+};
+
+module.exports = {
+  SEARCH_VECTOR,
+  migrationSource,
+};
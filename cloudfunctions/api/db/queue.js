@@ -0,0 +1,112 @@
+const crypto = require("crypto");
+const { PubSub, v1 } = require("@google-cloud/pubsub");
+
+const db = require("./index");
+const cache = require("./cache");
+
+// Asynchronous write path: the API publishes to POSTS_TOPIC, the consumer drains POSTS_SUBSCRIPTION
+const envInt = (name, fallback) => {
+  const value = parseInt(process.env[name], 10);
+  return Number.isNaN(value) ? fallback : value;
+};
+
+const enabled = () => Boolean(process.env.POSTS_TOPIC);
+
+let topic;
+
+// The client batches publishes of concurrent requests into fewer Pub/Sub calls
+const getTopic = () => {
+  if (!topic) {
+    topic = new PubSub().topic(process.env.POSTS_TOPIC, {
+      batching: { maxMessages: 100, maxMilliseconds: 10 },
+    });
+  }
+  return topic;
+};
+
+// Clients may send an Idempotency-Key to make retries safe; otherwise every request gets its own
+const publishPost = async ({ author, content, idempotencyKey }) => {
+  const message = {
+    idempotencyKey: idempotencyKey || crypto.randomUUID(),
+    postedAt: new Date().toISOString(),
+    author,
+    content,
+  };
+  await getTopic().publishMessage({ json: message });
+  return message.idempotencyKey;
+};
+
+const parse = (message) => {
+  try {
+    const post = JSON.parse(Buffer.from(message.message.data, "base64").toString("utf8"));
+    if (!post.idempotencyKey || !post.author || !post.content || Number.isNaN(Date.parse(post.postedAt))) {
+      return null;
+    }
+    return {
+      idempotencyKey: String(post.idempotencyKey).slice(0, 64),
+      postedAt: new Date(post.postedAt),
+      author: post.author,
+      content: post.content,
+    };
+  } catch (err) {
+    return null;
+  }
+};
+
+// Pulls batches until the subscription is empty or the run time is used up. Messages are acked
+// only after their batch is committed, so a failed insert is redelivered; the idempotency key
+// makes the redelivery a no-op for rows that did make it in.
+const drain = async () => {
+  const subscriber = new v1.SubscriberClient();
+  const subscription = process.env.POSTS_SUBSCRIPTION;
+  const batchSize = envInt("CONSUMER_BATCH_SIZE", 500);
+  const deadline = Date.now() + envInt("CONSUMER_RUN_SECONDS", 480) * 1000;
+  const pool = db.getPool();
+
+  let received = 0;
+  let inserted = 0;
+  let dropped = 0;
+  try {
+    while (Date.now() < deadline) {
+      let response;
+      try {
+        [response] = await subscriber.pull({ subscription, maxMessages: batchSize }, { timeout: 20000 });
+      } catch (err) {
+        if (err.code === 4) {
+          // DEADLINE_EXCEEDED: nothing arrived while waiting
+          break;
+        }
+        throw err;
+      }
+      const messages = response.receivedMessages || [];
+      if (messages.length === 0) {
+        break;
+      }
+
+      const posts = [];
+      for (const message of messages) {
+        const post = parse(message);
+        if (post) {
+          posts.push(post);
+        } else {
+          console.log(`Dropping malformed message ${message.message.messageId}`);
+          dropped++;
+        }
+      }
+
+      inserted += await db.addPosts(pool, posts);
+      received += messages.length;
+      await subscriber.acknowledge({ subscription, ackIds: messages.map((message) => message.ackId) });
+      await cache.invalidateLists();
+    }
+  } finally {
+    await subscriber.close();
+  }
+  return { received, inserted, dropped };
+};
+
+module.exports = {
+  enabled,
+  publishPost,
+  drain,
+};
@@ -4,6 +4,8 @@ const express = require("express");
 const cors = require("cors");
 const app = express();
 const posts = require("./posts");
+const db = require("./db");
+const queue = require("./db/queue");
 
 
 app.use(express.json());
@@ -16,7 +18,38 @@ app.options(function (_req, res, next) {
 });
 
 app.use("/posts", posts.postsRouter);
+// Same routes as seen through the load balancer's /api/* path rule
+app.use("/api/posts", posts.postsRouter);
+
+// Give up retrying a failed migration after this long, so a broken migration is not retried for days
+const MIGRATION_RETRY_MS = 10 * 60 * 1000;
+
+// Deploy-time schema migration, triggered by the marker object SchemaMigration writes per archive
+const migrate = async (_data, context) => {
+    try {
+        const { batch, applied } = await db.migrate();
+        console.log(JSON.stringify({ severity: "INFO", message: "schema migrated", batch, applied }));
+    } catch (err) {
+        if (Date.now() - Date.parse(context.timestamp) > MIGRATION_RETRY_MS) {
+            console.log(JSON.stringify({ severity: "ERROR", message: "schema migration failed, not retrying", error: err.message }));
+            return;
+        }
+        throw err;
+    }
+};
+
+// Scheduled consumer of the asynchronous write path, see db/queue.js
+const consume = async (_req, res) => {
+    try {
+        res.json(await queue.drain());
+    } catch (err) {
+        console.log(err);
+        res.status(500).json({ error: err.message });
+    }
+};
 
 module.exports = {
     app,
+    migrate,
+    consume,
 };
\ No newline at end of file
@@ -0,0 +1,93 @@
+"use strict";
+
+// Checks db/cache.js against the Redis of docker-compose.yml:
+//   docker compose up -d redis && REDIS_HOST=localhost:6379 npm run test:cache
+// The tests that need a running Redis are skipped when REDIS_HOST is not set.
+const test = require("node:test");
+const assert = require("node:assert");
+const crypto = require("node:crypto");
+
+const CACHE_MODULE = require.resolve("../db/cache");
+
+// Every load gets its own module, so it also gets its own client for the REDIS_HOST it runs with
+const loadCache = (redisHost) => {
+  const previous = process.env.REDIS_HOST;
+  process.env.REDIS_HOST = redisHost;
+  delete require.cache[CACHE_MODULE];
+  const cache = require(CACHE_MODULE);
+  return {
+    cache,
+    restore: async () => {
+      await cache.disconnect();
+      process.env.REDIS_HOST = previous;
+    },
+  };
+};
+
+const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+test("concurrent misses on one key load it once", { skip: !process.env.REDIS_HOST && "REDIS_HOST is not set" }, async () => {
+  const { cache, restore } = loadCache(process.env.REDIS_HOST);
+  try {
+    const key = `test:stampede:${crypto.randomUUID()}`;
+    let loads = 0;
+    const load = async () => {
+      loads += 1;
+      await sleep(200);
+      return { loadedAt: Date.now() };
+    };
+
+    const results = await Promise.all(Array.from({ length: 50 }, () => cache.cached(key, 30, load)));
+
+    assert.strictEqual(loads, 1);
+    for (const result of results) {
+      assert.deepStrictEqual(result, results[0]);
+    }
+  } finally {
+    await restore();
+  }
+});
+
+test("a failing loader is not retried and leaves nothing cached", { skip: !process.env.REDIS_HOST && "REDIS_HOST is not set" }, async () => {
+  const { cache, restore } = loadCache(process.env.REDIS_HOST);
+  try {
+    const key = `test:failing:${crypto.randomUUID()}`;
+    let loads = 0;
+    await assert.rejects(
+      cache.cached(key, 30, async () => {
+        loads += 1;
+        throw new Error("database down");
+      }),
+      /database down/
+    );
+    assert.strictEqual(loads, 1);
+
+    const value = await cache.cached(key, 30, async () => "recovered");
+    assert.strictEqual(value, "recovered");
+  } finally {
+    await restore();
+  }
+});
+
+test("an unreachable Redis falls back to the loader without waiting for it", async () => {
+  const { cache, restore } = loadCache("127.0.0.1:1");
+  try {
+    const started = Date.now();
+    let loads = 0;
+    const value = await cache.cached("test:unreachable", 30, async () => {
+      loads += 1;
+      return "from-db";
+    });
+
+    assert.strictEqual(value, "from-db");
+    assert.strictEqual(loads, 1);
+    assert.ok(Date.now() - started < 2000, "fell back within the connect wait");
+
+    // Later calls skip Redis entirely while the client reconnects
+    const again = Date.now();
+    await cache.cached("test:unreachable", 30, async () => "from-db");
+    assert.ok(Date.now() - again < 100, "did not wait again while reconnecting");
+  } finally {
+    await restore();
+  }
+});
@@ -0,0 +1,18 @@
+"use strict";
+
+// Runs the API outside Cloud Functions, against the Postgres stand-in of docker-compose.yml.
+// Connection settings use the same DB_* variables CloudFunction sets on the deployed function.
+const { app } = require("..");
+const db = require("../db");
+
+const port = parseInt(process.env.PORT, 10) || 8080;
+
+db.migrate()
+    .then(({ applied }) => {
+        console.log(`Applied migrations: ${applied.length ? applied.join(", ") : "none"}`);
+        app.listen(port, () => console.log(`Posts API listening on http://localhost:${port}/posts`));
+    })
+    .catch((err) => {
+        console.log(err);
+        process.exit(1);
+    });
@@ -1,28 +1,41 @@
 const express = require("express");
 const db = require("../db");
+const cache = require("../db/cache");
+const queue = require("../db/queue");
 
 const router = express.Router();
 
-const jsonResponse = (res) => {
+// Edge cache lifetimes for the CDN in front of /api/*: new posts show up in the list after at
+// most s-maxage seconds, while a post's detail never changes once written
+const LIST_CACHE_CONTROL = "public, max-age=5, s-maxage=10";
+const DETAIL_CACHE_CONTROL = "public, max-age=300, s-maxage=86400";
+
+const jsonResponse = (res, nextCursor = null) => {
     return {
         statusCode: 200,
         header: {
             "Content-Type": "application/json",
         },
-        data: res
+        data: res,
+        nextCursor: nextCursor
     }
 }
 
-const getAllPosts = async (pool, id) => {
-    return db.getAllPosts(pool)
+const getAllPosts = async (pool, page) => {
+    const key = await cache.listKey(page.limit, page.cursor);
+    return cache.cached(key, cache.LIST_TTL_SECONDS, () => db.getAllPosts(pool, page))
 };
   
+// Unknown ids come back as [] and are not cached, so a post is visible as soon as it exists
 const getPost = async (pool, id) => {
-    return db.getPost(pool,id)
+    return cache.cached(cache.detailKey(id), cache.DETAIL_TTL_SECONDS, () => db.getPost(pool,id), {
+        cacheable: (post) => !Array.isArray(post),
+    })
 };
 
 const addPost = async (pool, post) => {
     await db.addPost(pool, post)
+    await cache.invalidateLists()
     return {
         statusCode: 201,
         body: {},
@@ -30,10 +43,27 @@ const addPost = async (pool, post) => {
 }
 
 router.post("/", async (req, res) => {
-    console.log(req)
-    pool = await db.createPoolAndValidateSchema();
     const author = req.body.author;
     const content = req.body.content;
+
+    if (queue.enabled()) {
+      // Queued posts are inserted later, so reject what the insert would reject now
+      if (!author || !content) {
+        return res.status(400).send({ statusCode: 400, body: {} });
+      }
+      try {
+        const idempotencyKey = await queue.publishPost({ author, content, idempotencyKey: req.get("Idempotency-Key") });
+        return res.status(202).send({
+          statusCode: 202,
+          body: { idempotencyKey },
+        });
+      } catch (err) {
+        console.log(err);
+        return res.status(503).send({ statusCode: 503, body: {} });
+      }
+    }
+
+    const pool = db.getPool();
     const timestamp = new Date();
   
     try {  
@@ -49,19 +79,42 @@ router.post("/", async (req, res) => {
     }
   });
 
-router.get("/", async (_req, res) => {
-    pool = await db.createPoolAndValidateSchema();
+router.get("/", async (req, res) => {
+    const pool = db.getReadPool();
+    try {
+        const page = await getAllPosts(pool, { limit: req.query.limit, cursor: req.query.cursor });
+        res.set("Cache-Control", LIST_CACHE_CONTROL);
+        return res.json(jsonResponse(page.posts, page.nextCursor))
+    } catch (err) {
+        console.log(err);
+    }
+});
+
+// Full-text search over content and author (q) and/or an author prefix (author), newest first
+router.get("/search", async (req, res) => {
+    const q = typeof req.query.q === "string" ? req.query.q.trim() : "";
+    const author = typeof req.query.author === "string" ? req.query.author.trim() : "";
+    if (!q && !author) {
+        return res.status(400).json({ error: "Expected a q or author query parameter" });
+    }
+
+    const pool = db.getReadPool();
     try {
-        return res.json(jsonResponse(await getAllPosts(pool)))
+        const page = await db.searchPosts(pool, { q, author, limit: req.query.limit, cursor: req.query.cursor });
+        res.set("Cache-Control", LIST_CACHE_CONTROL);
+        return res.json(jsonResponse(page.posts, page.nextCursor))
     } catch (err) {
         console.log(err);
+        return res.status(500).json({ error: "Search failed" });
     }
 });
 
 router.get("/:id/detail", async (req, res) => {
-    pool = await db.createPoolAndValidateSchema();
+    const pool = db.getReadPool();
     try {
-       return res.json(await getPost(pool, req.params.id));
+       const post = await getPost(pool, req.params.id);
+       res.set("Cache-Control", Array.isArray(post) ? "no-store" : DETAIL_CACHE_CONTROL);
+       return res.json(post);
     } catch (err) {
       console.log(err);
     }
@@ -28,5 +28,9 @@ async function uploadFile() {
   
 //uploadFile().catch(console.error);
 
-execSync("gsutil rsync -R build/ gs://$BUCKET_NAME")
+// Uploads build/ with Cache-Control and Content-Encoding per file, see StaticSiteUpload
+execSync(
+  'mvn -q -f ../../pom.xml compile exec:java -Dexec.mainClass=com.mycompany.app.frontend.StaticSiteUpload -Dexec.args="build $BUCKET_NAME"',
+  { stdio: "inherit" }
+)
 
@@ -11,7 +11,23 @@ function App() {
     setTimeout(triggerRefetch, 500);
     setModalOpen(false);
   };
-  const { posts, error, triggerRefetch } = usePosts();
+  const { posts, error, triggerRefetch, loadMore, hasMore } = usePosts();
+  const sentinel = React.useRef<HTMLDivElement>(null);
+
+  // Fetch the next page as soon as the end of the list scrolls into view
+  React.useEffect(() => {
+    const node = sentinel.current;
+    if (!node || !hasMore) {
+      return;
+    }
+    const observer = new IntersectionObserver((entries) => {
+      if (entries.some((entry) => entry.isIntersecting)) {
+        loadMore();
+      }
+    });
+    observer.observe(node);
+    return () => observer.disconnect();
+  }, [hasMore, loadMore]);
 
   if (error) {
     return <p>Error fetching posts: {JSON.stringify(error)}</p>;
@@ -28,6 +44,7 @@ function App() {
         {posts.map((post) => (
           <Post key={post.id} {...post} />
         ))}
+        {hasMore ? <div ref={sentinel} className="post-list-sentinel" /> : null}
       </div>
       <CreatePostModal isModalOpen={isModalOpen} closeModal={closeModal} />
     </>
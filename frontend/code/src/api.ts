@@ -10,21 +10,56 @@ export type Error = {
   error: string;
 };
 
+const PAGE_SIZE = 20;
+
+type PostsPage = {
+  data: Post[];
+  nextCursor: string | null;
+};
+
+async function fetchPostsPage(cursor: string | null): Promise<PostsPage> {
+  const params = new URLSearchParams({ limit: String(PAGE_SIZE) });
+  if (cursor) {
+    params.set("cursor", cursor);
+  }
+  return fetch(`${API_URL}/posts?${params}`).then((res) => res.json());
+}
+
+// Loads the newest page first and appends older pages on demand
 export function usePosts() {
   const [posts, setPosts] = React.useState<Post[]>([]);
   const [error, setError] = React.useState<null | string>(null);
+  const [nextCursor, setNextCursor] = React.useState<string | null>(null);
+  const [isLoading, setLoading] = React.useState(false);
 
   const triggerRefetch = async () => {
+    setLoading(true);
     try {
-      const response = await fetch(`${API_URL}/posts`).then((res) =>
-        res.json()
-      );
-      console.log(response)
-      const rows: Post[] = response.data;
-      setPosts(rows.reverse());
+      const page = await fetchPostsPage(null);
+      setPosts(page.data);
+      setNextCursor(page.nextCursor);
+    } catch (err) {
+      console.error("Error fetching posts:", err);
+      setError(err);
+    } finally {
+      setLoading(false);
+    }
+  };
+
+  const loadMore = async () => {
+    if (isLoading || nextCursor === null) {
+      return;
+    }
+    setLoading(true);
+    try {
+      const page = await fetchPostsPage(nextCursor);
+      setPosts((current) => current.concat(page.data));
+      setNextCursor(page.nextCursor);
     } catch (err) {
       console.error("Error fetching posts:", err);
       setError(err);
+    } finally {
+      setLoading(false);
     }
   };
 
@@ -32,7 +67,7 @@ export function usePosts() {
     triggerRefetch();
   }, []);
 
-  return { posts, error, triggerRefetch };
+  return { posts, error, triggerRefetch, loadMore, hasMore: nextCursor !== null };
 }
 
 type PostDetail = Post & {
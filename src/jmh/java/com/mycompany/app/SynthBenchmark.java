@@ -0,0 +1,79 @@
+package com.mycompany.app;
+
+import com.hashicorp.cdktf.App;
+import com.hashicorp.cdktf.Testing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time of building and synthesizing the posts and frontend stacks of 1, 10 and 50
+ * environments. Run with the gc profiler (the default of the bench profile) to also report the
+ * bytes allocated per operation.
+ *
+ * Nothing is deployed and no provider is contacted; stacks are synthesized into a temporary
+ * directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3G")
+public class SynthBenchmark {
+
+    private static final String USER = "bench";
+    private static final String PROJECT = "bench-project";
+
+    @Param({"1", "10", "50"})
+    public int environmentCount;
+
+    private List<Environment> environments;
+
+    @Setup
+    public void setUp(){
+        environments = new ArrayList<>();
+        for (int i = 0; i < environmentCount; i++) {
+            String name = "bench" + i;
+            environments.add(Environment.fromMap(new HashMap<>(){{
+                put("name", name);
+            }}));
+        }
+    }
+
+    @Benchmark
+    public App construct(){
+        return build();
+    }
+
+    @Benchmark
+    public App synth(){
+        App app = build();
+        app.synth();
+        return app;
+    }
+
+    private App build(){
+        App app = Testing.app();
+        for (Environment environment : environments) {
+            Main.PostsStack posts = new Main.PostsStack(app, "posts-" + environment.getName(), environment, USER, PROJECT);
+            Main.FrontendStack frontend = new Main.FrontendStack(app, "frontend-" + environment.getName(), environment, USER, PROJECT, posts.getApiEndpoints());
+            frontend.addDependency(posts);
+        }
+        return app;
+    }
+}
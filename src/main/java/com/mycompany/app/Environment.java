@@ -0,0 +1,485 @@
+package com.mycompany.app;
+
+import com.mycompany.app.frontend.TransportProfile;
+import com.mycompany.app.observability.ObservabilitySettings;
+import com.mycompany.app.posts.AsyncWriteSettings;
+import com.mycompany.app.posts.CacheSettings;
+import com.mycompany.app.posts.DatabaseProfile;
+import com.mycompany.app.posts.PoolerSettings;
+import com.mycompany.app.posts.cloudfunctions.EgressSettings;
+import com.mycompany.app.posts.cloudfunctions.FunctionScaling;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One deployable environment. Each environment produces a posts stack and a frontend stack named
+ * after it, e.g. "posts-dev" and "frontend-dev".
+ *
+ * Environments are read from the "environments" list in the cdktf.json context:
+ *
+ * <pre>
+ * "environments": [
+ *   { "name": "dev", "environment": "development", "region": "us-east1", "database": "small", "function": { "memoryMb": 256 }, "cdn": true }
+ * ]
+ * </pre>
+ *
+ * "database" names a {@link DatabaseProfile} preset; "dbTier" and "readReplicas" optionally override
+ * its machine tier and number of read replicas. "pooler" enables PgBouncer in transaction pooling
+ * mode in every region, e.g. { "poolSize": 20, "maxClientConnections": 1000, "machineType": "e2-small",
+ * "instances": 2, "zones": ["b", "c"] }.
+ * "cache" provisions a Redis read cache, e.g. { "memorySizeGb": 1, "listTtlSeconds": 10 }.
+ * "asyncWrites" queues new posts on Pub/Sub and inserts them in batches, e.g. { "batchSize": 500 }.
+ * "function" sets the {@link FunctionScaling} of the API: generation, runtime, memoryMb, cpu,
+ * minInstances, maxInstances and concurrency. "egress" sizes the VPC connector of the API, see
+ * {@link EgressSettings}. "regions" deploys the API active-active to several
+ * regions behind the global load balancer; the first entry is the primary region that hosts the
+ * database, and every other region gets its own function and cross-region read replica. "domains" lists the site's host names and
+ * "transport" sets the {@link TransportProfile} of its HTTPS proxy: quic, tlsProfile, minTlsVersion
+ * and certificateMap. "observability" sets the alert thresholds of the dashboards and alert
+ * policies of both stacks, see {@link ObservabilitySettings}.
+ */
+public class Environment {
+
+    private static final String DEFAULT_REGION = "us-east1";
+    private static final int DEFAULT_DB_POOL_MIN = 0;
+    private static final int DEFAULT_DB_POOL_MAX = 5;
+    private static final List<String> DEFAULT_DOMAINS = List.of("cdktfpython.com", "www.cdktfpython.com");
+
+    private final String name;
+    private final String environment;
+    private final String region;
+    private final List<String> regions;
+    private final DatabaseProfile database;
+    private final PoolerSettings pooler;
+    private final CacheSettings cache;
+    private final AsyncWriteSettings asyncWrites;
+    private final FunctionScaling functionScaling;
+    private final EgressSettings egress;
+    private final int dbPoolMin;
+    private final int dbPoolMax;
+    private final boolean cdn;
+    private final List<String> domains;
+    private final TransportProfile transport;
+    private final ObservabilitySettings observability;
+
+    private Environment(Builder builder){
+        this.name = builder.name;
+        this.environment = builder.environment == null ? builder.name : builder.environment;
+        this.region = builder.region;
+        this.regions = builder.regions == null ? List.of(builder.region) : builder.regions;
+        this.database = builder.database;
+        this.pooler = builder.pooler;
+        this.cache = builder.cache;
+        this.asyncWrites = builder.asyncWrites;
+        this.functionScaling = builder.functionScaling;
+        this.egress = builder.egress;
+        this.dbPoolMin = builder.dbPoolMin;
+        this.dbPoolMax = builder.dbPoolMax;
+        this.cdn = builder.cdn;
+        this.domains = builder.domains;
+        this.transport = builder.transport;
+        this.observability = builder.observability;
+    }
+
+    /**
+     * Starts an environment with the given name and the defaults of every setting.
+     */
+    public static Builder builder(String name){
+        return new Builder(name);
+    }
+
+    public static List<Environment> defaults(){
+        return List.of(
+                builder("dev").environment("development").build(),
+                builder("prod").environment("production").build()
+        );
+    }
+
+    /**
+     * Parses the value of the "environments" context key, falling back to dev and prod when it is
+     * not set.
+     */
+    public static List<Environment> fromContext(Object context){
+        if (context == null) {
+            return defaults();
+        }
+        if (!(context instanceof List)) {
+            throw new IllegalArgumentException("The \"environments\" context must be a list, got: " + context);
+        }
+
+        List<Environment> environments = new ArrayList<>();
+        for (Object entry : (List<?>) context) {
+            if (!(entry instanceof Map)) {
+                throw new IllegalArgumentException("Every entry of \"environments\" must be an object, got: " + entry);
+            }
+            environments.add(fromMap((Map<?, ?>) entry));
+        }
+        return environments;
+    }
+
+    static Environment fromMap(Map<?, ?> values){
+        String name = string(values, "name", null);
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Environment is missing a \"name\": " + values);
+        }
+
+        DatabaseProfile database = DatabaseProfile.named(string(values, "database", "micro"));
+        String dbTier = string(values, "dbTier", null);
+        if (dbTier != null) {
+            database = database.withTier(dbTier);
+        }
+        if (values.get("readReplicas") != null) {
+            database = database.withReadReplicas(number(values, "readReplicas", 0));
+        }
+
+        PoolerSettings pooler = PoolerSettings.disabled();
+        Object poolerValues = values.get("pooler");
+        if (poolerValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) poolerValues;
+            pooler = new PoolerSettings(
+                    bool(settings, "enabled", true),
+                    string(settings, "machineType", pooler.getMachineType()),
+                    number(settings, "poolSize", pooler.getDefaultPoolSize()),
+                    number(settings, "maxClientConnections", pooler.getMaxClientConnections()),
+                    number(settings, "instances", pooler.getInstances()),
+                    strings(settings, "zones", pooler.getZones())
+            );
+        } else if (poolerValues != null) {
+            throw new IllegalArgumentException("\"pooler\" must be an object, got: " + poolerValues);
+        }
+
+        CacheSettings cache = CacheSettings.disabled();
+        Object cacheValues = values.get("cache");
+        if (cacheValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) cacheValues;
+            cache = new CacheSettings(
+                    bool(settings, "enabled", true),
+                    string(settings, "tier", cache.getTier()),
+                    number(settings, "memorySizeGb", cache.getMemorySizeGb()),
+                    number(settings, "listTtlSeconds", cache.getListTtlSeconds()),
+                    number(settings, "detailTtlSeconds", cache.getDetailTtlSeconds())
+            );
+        } else if (cacheValues != null) {
+            throw new IllegalArgumentException("\"cache\" must be an object, got: " + cacheValues);
+        }
+
+        AsyncWriteSettings asyncWrites = AsyncWriteSettings.disabled();
+        Object asyncWriteValues = values.get("asyncWrites");
+        if (asyncWriteValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) asyncWriteValues;
+            asyncWrites = new AsyncWriteSettings(
+                    bool(settings, "enabled", true),
+                    number(settings, "batchSize", asyncWrites.getBatchSize()),
+                    string(settings, "schedule", asyncWrites.getSchedule())
+            );
+        } else if (asyncWriteValues != null) {
+            throw new IllegalArgumentException("\"asyncWrites\" must be an object, got: " + asyncWriteValues);
+        }
+
+        FunctionScaling functionScaling = FunctionScaling.defaults();
+        Object functionValues = values.get("function");
+        if (functionValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) functionValues;
+            functionScaling = new FunctionScaling(
+                    number(settings, "generation", functionScaling.getGeneration()),
+                    string(settings, "runtime", functionScaling.getRuntime()),
+                    number(settings, "memoryMb", functionScaling.getMemoryMb()),
+                    string(settings, "cpu", functionScaling.getCpu()),
+                    number(settings, "minInstances", functionScaling.getMinInstances()),
+                    number(settings, "maxInstances", functionScaling.getMaxInstances()),
+                    number(settings, "concurrency", functionScaling.getConcurrency())
+            );
+        } else if (functionValues != null) {
+            throw new IllegalArgumentException("\"function\" must be an object, got: " + functionValues);
+        }
+
+        EgressSettings egress = EgressSettings.defaults();
+        Object egressValues = values.get("egress");
+        if (egressValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) egressValues;
+            egress = new EgressSettings(
+                    string(settings, "mode", egress.getMode()),
+                    string(settings, "machineType", egress.getMachineType()),
+                    number(settings, "minInstances", egress.getMinInstances()),
+                    number(settings, "maxInstances", egress.getMaxInstances()),
+                    string(settings, "egressSettings", egress.getEgressSettings())
+            );
+        } else if (egressValues != null) {
+            throw new IllegalArgumentException("\"egress\" must be an object, got: " + egressValues);
+        }
+
+        TransportProfile transport = TransportProfile.modern();
+        Object transportValues = values.get("transport");
+        if (transportValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) transportValues;
+            transport = new TransportProfile(
+                    bool(settings, "quic", transport.isQuic()),
+                    string(settings, "tlsProfile", transport.getTlsProfile()),
+                    string(settings, "minTlsVersion", transport.getMinTlsVersion()),
+                    bool(settings, "certificateMap", transport.isCertificateMap())
+            );
+        } else if (transportValues != null) {
+            throw new IllegalArgumentException("\"transport\" must be an object, got: " + transportValues);
+        }
+
+        ObservabilitySettings observability = ObservabilitySettings.defaults();
+        Object observabilityValues = values.get("observability");
+        if (observabilityValues instanceof Map) {
+            Map<?, ?> settings = (Map<?, ?>) observabilityValues;
+            observability = new ObservabilitySettings(
+                    bool(settings, "enabled", true),
+                    number(settings, "latencyP95Ms", observability.getLatencyP95Ms()),
+                    number(settings, "poolAcquireP95Ms", observability.getPoolAcquireP95Ms()),
+                    number(settings, "dbCpuPercent", observability.getDbCpuPercent()),
+                    number(settings, "dbConnections", observability.getDbConnections()),
+                    strings(settings, "notificationEmails", observability.getNotificationEmails())
+            );
+        } else if (observabilityValues != null) {
+            throw new IllegalArgumentException("\"observability\" must be an object, got: " + observabilityValues);
+        }
+
+        List<String> regions = strings(values, "regions", null);
+        String region = string(values, "region", regions == null ? DEFAULT_REGION : regions.get(0));
+        if (regions == null) {
+            regions = List.of(region);
+        } else if (!regions.get(0).equals(region)) {
+            throw new IllegalArgumentException("The first entry of \"regions\" must be the primary region " + region + ", got: " + regions);
+        } else if (new HashSet<>(regions).size() != regions.size()) {
+            throw new IllegalArgumentException("\"regions\" must not contain duplicates, got: " + regions);
+        }
+
+        return builder(name)
+                .environment(string(values, "environment", name))
+                .region(region)
+                .regions(regions)
+                .database(database)
+                .pooler(pooler)
+                .cache(cache)
+                .asyncWrites(asyncWrites)
+                .functionScaling(functionScaling)
+                .egress(egress)
+                .dbPool(number(values, "dbPoolMin", DEFAULT_DB_POOL_MIN), number(values, "dbPoolMax", DEFAULT_DB_POOL_MAX))
+                .cdn(bool(values, "cdn", true))
+                .domains(strings(values, "domains", DEFAULT_DOMAINS))
+                .transport(transport)
+                .observability(observability)
+                .build();
+    }
+
+    static String string(Map<?, ?> values, String key, String fallback){
+        Object value = values.get(key);
+        return value == null ? fallback : value.toString();
+    }
+
+    static int number(Map<?, ?> values, String key, int fallback){
+        Object value = values.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return Integer.parseInt(value.toString());
+    }
+
+    static List<String> strings(Map<?, ?> values, String key, List<String> fallback){
+        Object value = values.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            throw new IllegalArgumentException("\"" + key + "\" must be a non-empty list, got: " + value);
+        }
+        List<String> strings = new ArrayList<>();
+        for (Object entry : (List<?>) value) {
+            strings.add(entry.toString());
+        }
+        return strings;
+    }
+
+    static boolean bool(Map<?, ?> values, String key, boolean fallback){
+        Object value = values.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return Boolean.parseBoolean(value.toString());
+    }
+
+    public String getName(){
+        return this.name;
+    }
+
+    public String getEnvironment(){
+        return this.environment;
+    }
+
+    public String getRegion(){
+        return this.region;
+    }
+
+    /**
+     * All regions the API is deployed to, starting with the primary {@link #getRegion()}.
+     */
+    public List<String> getRegions(){
+        return this.regions;
+    }
+
+    public DatabaseProfile getDatabase(){
+        return this.database;
+    }
+
+    public PoolerSettings getPooler(){
+        return this.pooler;
+    }
+
+    public CacheSettings getCache(){
+        return this.cache;
+    }
+
+    public AsyncWriteSettings getAsyncWrites(){
+        return this.asyncWrites;
+    }
+
+    public FunctionScaling getFunctionScaling(){
+        return this.functionScaling;
+    }
+
+    public EgressSettings getEgress(){
+        return this.egress;
+    }
+
+    public int getDbPoolMin(){
+        return this.dbPoolMin;
+    }
+
+    public int getDbPoolMax(){
+        return this.dbPoolMax;
+    }
+
+    public boolean isCdn(){
+        return this.cdn;
+    }
+
+    public List<String> getDomains(){
+        return this.domains;
+    }
+
+    public TransportProfile getTransport(){
+        return this.transport;
+    }
+
+    public ObservabilitySettings getObservability(){
+        return this.observability;
+    }
+
+    public static class Builder {
+
+        private final String name;
+        private String environment;
+        private String region = DEFAULT_REGION;
+        private List<String> regions;
+        private DatabaseProfile database = DatabaseProfile.micro();
+        private PoolerSettings pooler = PoolerSettings.disabled();
+        private CacheSettings cache = CacheSettings.disabled();
+        private AsyncWriteSettings asyncWrites = AsyncWriteSettings.disabled();
+        private FunctionScaling functionScaling = FunctionScaling.defaults();
+        private EgressSettings egress = EgressSettings.defaults();
+        private int dbPoolMin = DEFAULT_DB_POOL_MIN;
+        private int dbPoolMax = DEFAULT_DB_POOL_MAX;
+        private boolean cdn = true;
+        private List<String> domains = DEFAULT_DOMAINS;
+        private TransportProfile transport = TransportProfile.modern();
+        private ObservabilitySettings observability = ObservabilitySettings.defaults();
+
+        private Builder(String name){
+            this.name = name;
+        }
+
+        /**
+         * The environment label used in resource names; defaults to the name.
+         */
+        public Builder environment(String environment){
+            this.environment = environment;
+            return this;
+        }
+
+        public Builder region(String region){
+            this.region = region;
+            return this;
+        }
+
+        /**
+         * All regions of the API, starting with the primary; defaults to just {@link #region(String)}.
+         */
+        public Builder regions(List<String> regions){
+            this.regions = regions;
+            return this;
+        }
+
+        public Builder database(DatabaseProfile database){
+            this.database = database;
+            return this;
+        }
+
+        public Builder pooler(PoolerSettings pooler){
+            this.pooler = pooler;
+            return this;
+        }
+
+        public Builder cache(CacheSettings cache){
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder asyncWrites(AsyncWriteSettings asyncWrites){
+            this.asyncWrites = asyncWrites;
+            return this;
+        }
+
+        public Builder functionScaling(FunctionScaling functionScaling){
+            this.functionScaling = functionScaling;
+            return this;
+        }
+
+        public Builder egress(EgressSettings egress){
+            this.egress = egress;
+            return this;
+        }
+
+        public Builder dbPool(int dbPoolMin, int dbPoolMax){
+            this.dbPoolMin = dbPoolMin;
+            this.dbPoolMax = dbPoolMax;
+            return this;
+        }
+
+        public Builder cdn(boolean cdn){
+            this.cdn = cdn;
+            return this;
+        }
+
+        public Builder domains(List<String> domains){
+            this.domains = domains;
+            return this;
+        }
+
+        public Builder transport(TransportProfile transport){
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder observability(ObservabilitySettings observability){
+            this.observability = observability;
+            return this;
+        }
+
+        public Environment build(){
+            return new Environment(this);
+        }
+    }
+}
@@ -4,9 +4,17 @@ import com.hashicorp.cdktf.providers.google_beta.google_compute_project_default_
 import com.hashicorp.cdktf.providers.google_beta.google_compute_project_default_network_tier.GoogleComputeProjectDefaultNetworkTierConfig;
 import com.mycompany.app.frontend.Frontend;
 import com.mycompany.app.posts.*;
+import com.mycompany.app.posts.cloudfunctions.CloudFunction;
+import com.mycompany.app.posts.cloudfunctions.FunctionArchive;
+import com.mycompany.app.posts.cloudfunctions.FunctionEndpoint;
 import com.hashicorp.cdktf.*;
 import software.constructs.Construct;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.hashicorp.cdktf.providers.google_beta.provider.GoogleBetaProvider;
 import com.hashicorp.cdktf.providers.google_beta.provider.GoogleBetaProviderConfig;
 import com.hashicorp.cdktf.providers.local.provider.LocalProvider;
@@ -15,14 +23,10 @@ public class Main {
 
     public static class FrontendStack extends TerraformStack{
 
-        public FrontendStack(Construct scope, String name, String environment, String user, String project, String httpTriggerUrl){
+        public FrontendStack(Construct scope, String name, Environment environment, String user, String project, List<FunctionEndpoint> apiEndpoints){
             super(scope,name);
 
-            new GoogleBetaProvider(this, "google-beta", GoogleBetaProviderConfig.builder()
-                    .region("us-east1")
-                    .project(project)
-                    .build()
-            );
+            new GoogleBetaProvider(this, "google-beta", providerConfig(project, environment.getRegion()));
 
             new GoogleComputeProjectDefaultNetworkTier(this, "network-tier", GoogleComputeProjectDefaultNetworkTierConfig.builder()
                     .project(project)
@@ -32,7 +36,7 @@ public class Main {
 
             new LocalProvider(this, "local");
 
-            new Frontend(this, "frontend-" + environment + "-" + user, project, environment, user, httpTriggerUrl);
+            new Frontend(this, "frontend-" + environment.getEnvironment() + "-" + user, environment, user, project, apiEndpoints);
 
         }
     }
@@ -40,15 +44,12 @@ public class Main {
     public static class PostsStack extends TerraformStack{
 
         private String httpsTriggerUrl;
+        private List<FunctionEndpoint> apiEndpoints;
 
-        public PostsStack(Construct scope, String name, String environment, String user, String project){
+        public PostsStack(Construct scope, String name, Environment environment, String user, String project){
             super(scope, name);
 
-            new GoogleBetaProvider(this, "google-beta", GoogleBetaProviderConfig.builder()
-                    .region("us-east1")
-                    .project(project)
-                    .build()
-            );
+            new GoogleBetaProvider(this, "google-beta", providerConfig(project, environment.getRegion()));
 
             TerraformVariable dbPass = new TerraformVariable(this, "DB_PASS", TerraformVariableConfig.builder()
                     .type("string")
@@ -57,57 +58,78 @@ public class Main {
                     .build()
             );
 
-            Posts posts = new Posts(this, "posts-" + environment + "-" + user, environment, user, project, dbPass.getStringValue());
+            Posts posts = new Posts(this, "posts-" + environment.getEnvironment() + "-" + user, environment, user, project, dbPass.getStringValue());
 
             this.httpsTriggerUrl = posts.getHttpsTriggerUrl();
+            this.apiEndpoints = posts.getApiEndpoints();
         }
 
         public String getHttpsTriggerUrl(){
             return this.httpsTriggerUrl;
         }
+
+        public List<FunctionEndpoint> getApiEndpoints(){
+            return this.apiEndpoints;
+        }
+    }
+
+    private static final Map<String, GoogleBetaProviderConfig> PROVIDER_CONFIGS = new ConcurrentHashMap<>();
+
+    static GoogleBetaProviderConfig providerConfig(String project, String region){
+        return PROVIDER_CONFIGS.computeIfAbsent(project + "/" + region, key -> GoogleBetaProviderConfig.builder()
+                .region(region)
+                .project(project)
+                .build()
+        );
+    }
+
+    private static void addRemoteBackend(TerraformStack stack){
+        new RemoteBackend(stack, RemoteBackendConfig.builder()
+                .organization("terraform-demo-mad")
+                .workspaces(new NamedRemoteWorkspace("cdktf-integration-serverless-java-example"))
+                .build()
+        );
     }
 
     public static void main(String[] args) {
-        final App app = new App();
+        Boolean USE_REMOTE_BACKEND = "true".equals(System.getenv("USE_REMOTE_BACKEND"));
+        Boolean PREFETCH_ARCHIVE = "true".equals(System.getenv("CDKTF_PREFETCH_ARCHIVE"));
+        Boolean SYNTH_REPORT = "true".equals(System.getenv("CDKTF_SYNTH_REPORT"));
+        String user = System.getenv("CDKTF_USER");
+        String project = System.getenv("PROJECT_ID");
+
+        // The jsii runtime is not thread-safe, so every construct is created on this thread. Packing
+        // the function archive is plain Java and can overlap with starting the runtime.
+        CompletableFuture<FunctionArchive> archive = PREFETCH_ARCHIVE
+                ? CompletableFuture.supplyAsync(CloudFunction::apiArchive)
+                : CompletableFuture.completedFuture(null);
 
-        Boolean USE_REMOTE_BACKEND = (System.getenv("USE_REMOTE_BACKEND") == "true");
+        final App app = new App();
 
-        //DEV
-        PostsStack postsDev = new PostsStack(app, "posts-dev", "development", System.getenv("CDKTF_USER"), System.getenv("PROJECT_ID"));
-        if (USE_REMOTE_BACKEND) {
-            new RemoteBackend(postsDev, RemoteBackendConfig.builder()
-                    .organization("terraform-demo-mad")
-                    .workspaces(new NamedRemoteWorkspace("cdktf-integration-serverless-java-example"))
-                    .build()
-            );
-        }
-        FrontendStack frontendDev = new FrontendStack(app, "frontend-dev", "development", System.getenv("CDKTF_USER"), System.getenv("PROJECT_ID"), postsDev.getHttpsTriggerUrl());
-        if (USE_REMOTE_BACKEND) {
-            new RemoteBackend(frontendDev, RemoteBackendConfig.builder()
-                    .organization("terraform-demo-mad")
-                    .workspaces(new NamedRemoteWorkspace("cdktf-integration-serverless-java-example"))
-                    .build()
-            );
+        List<Environment> environments = Environment.fromContext(app.getNode().tryGetContext("environments"));
+        archive.join();
+
+        SynthReport report = new SynthReport();
+        for (Environment environment : environments) {
+            String postsName = "posts-" + environment.getName();
+            String frontendName = "frontend-" + environment.getName();
+
+            PostsStack posts = report.construct(postsName, () -> new PostsStack(app, postsName, environment, user, project));
+            FrontendStack frontend = report.construct(frontendName, () -> new FrontendStack(app, frontendName, environment, user, project, posts.getApiEndpoints()));
+            frontend.addDependency(posts);
+            if (SYNTH_REPORT) {
+                report.timeSynth(postsName, posts);
+                report.timeSynth(frontendName, frontend);
+            }
+            if (USE_REMOTE_BACKEND) {
+                addRemoteBackend(posts);
+                addRemoteBackend(frontend);
+            }
         }
 
-        //Prod
-        PostsStack postsProd = new PostsStack(app, "posts-prod", "production", System.getenv("CDKTF_USER"), System.getenv("PROJECT_ID"));
-        if (USE_REMOTE_BACKEND) {
-            new RemoteBackend(postsProd, RemoteBackendConfig.builder()
-                    .organization("terraform-demo-mad")
-                    .workspaces(new NamedRemoteWorkspace("cdktf-integration-serverless-java-example"))
-                    .build()
-            );
-        }
-        FrontendStack frontendProd = new FrontendStack(app, "frontend-prod", "production", System.getenv("CDKTF_USER"), System.getenv("PROJECT_ID"), postsProd.getHttpsTriggerUrl());
-        if (USE_REMOTE_BACKEND) {
-            new RemoteBackend(frontendProd, RemoteBackendConfig.builder()
-                    .organization("terraform-demo-mad")
-                    .workspaces(new NamedRemoteWorkspace("cdktf-integration-serverless-java-example"))
-                    .build()
-            );
+        report.synth(app::synth);
+        if (SYNTH_REPORT) {
+            report.print(System.err);
         }
-
-        app.synth();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package com.mycompany.app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Names for resources whose IDs are too short to hold the environment, user and region, such as
+ * VPC connectors (25 characters) and service accounts (30 characters).
+ */
+public final class ResourceNames {
+
+    private ResourceNames(){
+    }
+
+    /**
+     * The prefix followed by 16 hex characters of the SHA-256 of the parts joined with "/", so the
+     * name is stable across synths and unique per combination of parts.
+     */
+    public static String hashed(String prefix, String... parts){
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.join("/", parts).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(prefix);
+            for (int i = 0; i < 8; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
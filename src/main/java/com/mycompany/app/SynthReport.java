@@ -0,0 +1,62 @@
+package com.mycompany.app;
+
+import com.hashicorp.cdktf.IStackSynthesizer;
+import com.hashicorp.cdktf.ISynthesisSession;
+import com.hashicorp.cdktf.TerraformStack;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Collects wall-clock timings for stack construction and synthesis.
+ *
+ * Construction and synthesis are timed per stack. Synthesis is timed by wrapping the stack's own
+ * synthesizer, so each stack is still synthesized once, by {@code app.synth()}. The total for
+ * {@code app.synth()} also covers preparing the stacks and writing the manifest.
+ */
+public class SynthReport {
+
+    private final Map<String, Long> constructionNanos = new LinkedHashMap<>();
+    private final Map<String, Long> synthNanos = new LinkedHashMap<>();
+    private long appSynthNanos;
+
+    public <T extends TerraformStack> T construct(String stackName, Supplier<T> factory){
+        long start = System.nanoTime();
+        T stack = factory.get();
+        constructionNanos.put(stackName, System.nanoTime() - start);
+        return stack;
+    }
+
+    public void timeSynth(String stackName, TerraformStack stack){
+        IStackSynthesizer synthesizer = stack.getSynthesizer();
+        stack.setSynthesizer(new IStackSynthesizer() {
+            @Override
+            public void synthesize(ISynthesisSession session){
+                long start = System.nanoTime();
+                synthesizer.synthesize(session);
+                synthNanos.put(stackName, System.nanoTime() - start);
+            }
+        });
+    }
+
+    public void synth(Runnable appSynth){
+        long start = System.nanoTime();
+        appSynth.run();
+        appSynthNanos = System.nanoTime() - start;
+    }
+
+    public void print(PrintStream out){
+        out.println(String.format("%-24s %14s %12s", "stack", "construct (ms)", "synth (ms)"));
+        for (Map.Entry<String, Long> entry : constructionNanos.entrySet()) {
+            Long synth = synthNanos.get(entry.getKey());
+            out.println(String.format("%-24s %14d %12s", entry.getKey(), millis(entry.getValue()), synth == null ? "-" : String.valueOf(millis(synth))));
+        }
+        out.println(String.format("%-24s %14s %12d", "app.synth()", "", millis(appSynthNanos)));
+    }
+
+    private static long millis(long nanos){
+        return nanos / 1_000_000;
+    }
+}
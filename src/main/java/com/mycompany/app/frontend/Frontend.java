@@ -1,5 +1,16 @@
 package com.mycompany.app.frontend;
 
+import com.hashicorp.cdktf.TerraformOutput;
+import com.hashicorp.cdktf.TerraformOutputConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate.GoogleCertificateManagerCertificate;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate.GoogleCertificateManagerCertificateConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate.GoogleCertificateManagerCertificateManaged;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate_map.GoogleCertificateManagerCertificateMap;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate_map.GoogleCertificateManagerCertificateMapConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate_map_entry.GoogleCertificateManagerCertificateMapEntry;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_certificate_map_entry.GoogleCertificateManagerCertificateMapEntryConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_dns_authorization.GoogleCertificateManagerDnsAuthorization;
+import com.hashicorp.cdktf.providers.google_beta.google_certificate_manager_dns_authorization.GoogleCertificateManagerDnsAuthorizationConfig;
 import com.hashicorp.cdktf.providers.local.file.File;
 import com.hashicorp.cdktf.providers.local.file.FileConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket.GoogleStorageBucket;
@@ -8,10 +19,22 @@ import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket.GoogleSto
 import com.hashicorp.cdktf.providers.google_beta.google_storage_default_object_access_control.GoogleStorageDefaultObjectAccessControl;
 import com.hashicorp.cdktf.providers.google_beta.google_storage_default_object_access_control.GoogleStorageDefaultObjectAccessControlConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_bucket.GoogleComputeBackendBucket;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_bucket.GoogleComputeBackendBucketCdnPolicy;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_bucket.GoogleComputeBackendBucketConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_service.GoogleComputeBackendService;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_service.GoogleComputeBackendServiceBackend;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_service.GoogleComputeBackendServiceCdnPolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_service.GoogleComputeBackendServiceCdnPolicyCacheKeyPolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_backend_service.GoogleComputeBackendServiceConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_network_endpoint_group.GoogleComputeRegionNetworkEndpointGroup;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_network_endpoint_group.GoogleComputeRegionNetworkEndpointGroupCloudFunction;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_network_endpoint_group.GoogleComputeRegionNetworkEndpointGroupCloudRun;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_network_endpoint_group.GoogleComputeRegionNetworkEndpointGroupConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_managed_ssl_certificate.GoogleComputeManagedSslCertificate;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_managed_ssl_certificate.GoogleComputeManagedSslCertificateConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_managed_ssl_certificate.GoogleComputeManagedSslCertificateManaged;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_ssl_policy.GoogleComputeSslPolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_ssl_policy.GoogleComputeSslPolicyConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_target_https_proxy.GoogleComputeTargetHttpsProxy;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_target_https_proxy.GoogleComputeTargetHttpsProxyConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_target_http_proxy.GoogleComputeTargetHttpProxy;
@@ -19,24 +42,36 @@ import com.hashicorp.cdktf.providers.google_beta.google_compute_target_http_prox
 import com.hashicorp.cdktf.providers.google_beta.google_compute_url_map.GoogleComputeUrlMap;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_url_map.GoogleComputeUrlMapConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_url_map.GoogleComputeUrlMapDefaultUrlRedirect;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_url_map.GoogleComputeUrlMapHostRule;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_url_map.GoogleComputeUrlMapPathMatcher;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_url_map.GoogleComputeUrlMapPathMatcherPathRule;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_global_forwarding_rule.GoogleComputeGlobalForwardingRule;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_global_forwarding_rule.GoogleComputeGlobalForwardingRuleConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_global_address.GoogleComputeGlobalAddress;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_global_address.GoogleComputeGlobalAddressConfig;
+import com.mycompany.app.Environment;
+import com.mycompany.app.observability.Observability;
+import com.mycompany.app.posts.cloudfunctions.FunctionEndpoint;
 import software.constructs.Construct;
 
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Frontend extends Construct {
 
-    public Frontend(Construct scope, String id, String project, String environment, String user, String httpsTriggerUrl){
+    public Frontend(Construct scope, String id, Environment env, String user, String project, List<FunctionEndpoint> apiEndpoints){
         super(scope, id);
 
+        String environment = env.getEnvironment();
+        boolean cdn = env.isCdn();
+        List<String> domains = env.getDomains();
+        TransportProfile transport = env.getTransport();
+
         GoogleStorageBucket bucket = new GoogleStorageBucket(this, "cdktfpython-static-site-" + environment + "-" + user, GoogleStorageBucketConfig.builder()
                 .name("cdktfpython-static-site-" + environment + "-" + user)
                 .project(project)
-                .location("us-east1")
+                .location(env.getRegion())
                 .storageClass("STANDARD")
                 .forceDestroy(true)
                 .website(GoogleStorageBucketWebsite.builder()
@@ -68,34 +103,83 @@ public class Frontend extends Construct {
                 .project(project)
                 .description("Contains files needed by the website")
                 .bucketName(bucket.getName())
-                .enableCdn(true)
-                .build()
-        );
-
-        GoogleComputeManagedSslCertificate sslCertificate = new GoogleComputeManagedSslCertificate(this, "ssl-certificate-" + environment + "-" + user, GoogleComputeManagedSslCertificateConfig.builder()
-                .name("ssl-certificate-" + environment + "-" + user)
-                .project(project)
-                .managed(GoogleComputeManagedSslCertificateManaged.builder()
-                        .domains(List.of("cdktfpython.com", "www.cdktfpython.com"))
+                .enableCdn(cdn)
+                .compressionMode("AUTOMATIC")
+                .cdnPolicy(GoogleComputeBackendBucketCdnPolicy.builder()
+                        .cacheMode("CACHE_ALL_STATIC")
+                        .defaultTtl(3600)
+                        .maxTtl(31536000)
+                        // Cloud CDN caps the max-age sent to browsers at clientTtl; let the origin headers through
+                        .clientTtl(31536000)
+                        .negativeCaching(true)
+                        .serveWhileStale(86400)
                         .build()
                 )
                 .build()
         );
 
+        GoogleComputeBackendService api = apiBackend(project, environment, user, cdn, apiEndpoints);
+
         GoogleComputeUrlMap webHttps = new GoogleComputeUrlMap(this, "web-url-map-https-" + environment + "-" + user, GoogleComputeUrlMapConfig.builder()
                 .name("web-url-map-https" + environment + "-" + user)
                 .project(project)
                 .defaultService(staticSite.getSelfLink())
+                .hostRule(List.of(GoogleComputeUrlMapHostRule.builder()
+                        .hosts(List.of("*"))
+                        .pathMatcher("site-and-api")
+                        .build()
+                ))
+                .pathMatcher(List.of(GoogleComputeUrlMapPathMatcher.builder()
+                        .name("site-and-api")
+                        .defaultService(staticSite.getSelfLink())
+                        .pathRule(List.of(GoogleComputeUrlMapPathMatcherPathRule.builder()
+                                .paths(List.of("/api", "/api/*"))
+                                .service(api.getSelfLink())
+                                .build()
+                        ))
+                        .build()
+                ))
                 .build()
         );
 
-        GoogleComputeTargetHttpsProxy httpsProxy = new GoogleComputeTargetHttpsProxy(this, "web-target-proxy-https-" + environment + "-" + user, GoogleComputeTargetHttpsProxyConfig.builder()
+        if (env.getObservability().isEnabled()) {
+            new Observability(this, "observability-" + environment + "-" + user, environment, user, project, "Frontend", env.getObservability())
+                    .watchLoadBalancer(webHttps.getName());
+        }
+
+        GoogleComputeTargetHttpsProxyConfig.Builder httpsProxyConfig = GoogleComputeTargetHttpsProxyConfig.builder()
                 .name("web-target-proxy-https-" + environment + "-" + user)
                 .project(project)
                 .urlMap(webHttps.getId())
-                .sslCertificates(List.of(sslCertificate.getSelfLink()))
-                .build()
-        );
+                .quicOverride(transport.isQuic() ? "ENABLE" : "NONE");
+
+        if (transport.getTlsProfile() != null) {
+            GoogleComputeSslPolicy sslPolicy = new GoogleComputeSslPolicy(this, "ssl-policy-" + environment + "-" + user, GoogleComputeSslPolicyConfig.builder()
+                    .name("ssl-policy-" + environment + "-" + user)
+                    .project(project)
+                    .profile(transport.getTlsProfile())
+                    .minTlsVersion(transport.getMinTlsVersion())
+                    .build()
+            );
+            httpsProxyConfig.sslPolicy(sslPolicy.getSelfLink());
+        }
+
+        if (transport.isCertificateMap()) {
+            httpsProxyConfig.certificateMap("//certificatemanager.googleapis.com/" + certificateMap(project, environment, user, domains));
+        } else {
+            GoogleComputeManagedSslCertificate sslCertificate = new GoogleComputeManagedSslCertificate(this, "ssl-certificate-" + environment + "-" + user, GoogleComputeManagedSslCertificateConfig.builder()
+                    .name("ssl-certificate-" + environment + "-" + user)
+                    .project(project)
+                    .managed(GoogleComputeManagedSslCertificateManaged.builder()
+                            .domains(domains)
+                            .build()
+                    )
+                    .build()
+            );
+            httpsProxyConfig.sslCertificates(List.of(sslCertificate.getSelfLink()));
+        }
+
+        GoogleComputeTargetHttpsProxy httpsProxy = new GoogleComputeTargetHttpsProxy(this, "web-target-proxy-https-" + environment + "-" + user, httpsProxyConfig.build());
 
         new GoogleComputeGlobalForwardingRule(this, "web-forwarding-rule-https-" + environment + "-" + user, GoogleComputeGlobalForwardingRuleConfig.builder()
                 .name("web-forwarding-rule-https-" + environment + "-" + user)
@@ -141,7 +225,122 @@ public class Frontend extends Construct {
 
         new File(this, "env", FileConfig.builder()
                 .filename(Paths.get(System.getProperty("user.dir"), "frontend","code", ".env.production.local").toString())
-                .content("BUCKET_NAME="+bucket.getName()+"\nREACT_APP_API_ENDPOINT="+httpsTriggerUrl)
+                .content("BUCKET_NAME="+bucket.getName()+"\nREACT_APP_API_ENDPOINT=/api")
+                .build()
+        );
+    }
+
+    /**
+     * Issues one Certificate Manager certificate covering all domains, authorized through DNS, and
+     * maps every domain to it. The DNS records to create are exposed as outputs.
+     */
+    private String certificateMap(String project, String environment, String user, List<String> domains){
+        List<String> authorizations = new ArrayList<>();
+        for (String domain : domains) {
+            String suffix = domain.replace('.', '-') + "-" + environment + "-" + user;
+            GoogleCertificateManagerDnsAuthorization authorization = new GoogleCertificateManagerDnsAuthorization(this, "dns-authorization-" + suffix, GoogleCertificateManagerDnsAuthorizationConfig.builder()
+                    .name("dns-authorization-" + suffix)
+                    .project(project)
+                    .domain(domain)
+                    .build()
+            );
+            authorizations.add(authorization.getId());
+
+            new TerraformOutput(this, "dns-authorization-record-" + suffix, TerraformOutputConfig.builder()
+                    .description("CNAME record that authorizes the certificate for " + domain)
+                    .value(authorization.getDnsResourceRecord())
+                    .build()
+            );
+        }
+
+        GoogleCertificateManagerCertificate certificate = new GoogleCertificateManagerCertificate(this, "certificate-" + environment + "-" + user, GoogleCertificateManagerCertificateConfig.builder()
+                .name("certificate-" + environment + "-" + user)
+                .project(project)
+                .managed(GoogleCertificateManagerCertificateManaged.builder()
+                        .domains(domains)
+                        .dnsAuthorizations(authorizations)
+                        .build()
+                )
+                .build()
+        );
+
+        GoogleCertificateManagerCertificateMap map = new GoogleCertificateManagerCertificateMap(this, "certificate-map-" + environment + "-" + user, GoogleCertificateManagerCertificateMapConfig.builder()
+                .name("certificate-map-" + environment + "-" + user)
+                .project(project)
+                .build()
+        );
+
+        for (String domain : domains) {
+            String suffix = domain.replace('.', '-') + "-" + environment + "-" + user;
+            new GoogleCertificateManagerCertificateMapEntry(this, "certificate-map-entry-" + suffix, GoogleCertificateManagerCertificateMapEntryConfig.builder()
+                    .name("certificate-map-entry-" + suffix)
+                    .project(project)
+                    .map(map.getName())
+                    .hostname(domain)
+                    .certificates(List.of(certificate.getId()))
+                    .build()
+            );
+        }
+
+        return map.getId();
+    }
+
+    /**
+     * Serves the posts API under /api/* on the same load balancer as the site, through one
+     * serverless NEG per function. With CDN enabled, GETs are cached according to the
+     * Cache-Control headers set by the API.
+     */
+    private GoogleComputeBackendService apiBackend(String project, String environment, String user, boolean cdn, List<FunctionEndpoint> apiEndpoints){
+        List<GoogleComputeBackendServiceBackend> backends = new ArrayList<>();
+        for (FunctionEndpoint endpoint : apiEndpoints) {
+            GoogleComputeRegionNetworkEndpointGroupConfig.Builder neg = GoogleComputeRegionNetworkEndpointGroupConfig.builder()
+                    .name("api-neg-" + endpoint.getRegion() + "-" + environment + "-" + user)
+                    .project(project)
+                    .region(endpoint.getRegion())
+                    .networkEndpointType("SERVERLESS");
+            if (endpoint.isSecondGen()) {
+                neg.cloudRun(GoogleComputeRegionNetworkEndpointGroupCloudRun.builder()
+                        .service(endpoint.getFunctionName())
+                        .build()
+                );
+            } else {
+                neg.cloudFunction(GoogleComputeRegionNetworkEndpointGroupCloudFunction.builder()
+                        .function(endpoint.getFunctionName())
+                        .build()
+                );
+            }
+
+            GoogleComputeRegionNetworkEndpointGroup group = new GoogleComputeRegionNetworkEndpointGroup(this, "api-neg-" + endpoint.getRegion() + "-" + environment + "-" + user, neg.build());
+
+            backends.add(GoogleComputeBackendServiceBackend.builder()
+                    .group(group.getId())
+                    .build()
+            );
+        }
+
+        return new GoogleComputeBackendService(this, "api-backend-" + environment + "-" + user, GoogleComputeBackendServiceConfig.builder()
+                .name("api-backend-" + environment + "-" + user)
+                .project(project)
+                .description("Posts API")
+                .loadBalancingScheme("EXTERNAL")
+                .protocol("HTTPS")
+                .backend(backends)
+                .enableCdn(cdn)
+                .compressionMode("AUTOMATIC")
+                .cdnPolicy(GoogleComputeBackendServiceCdnPolicy.builder()
+                        .cacheMode("USE_ORIGIN_HEADERS")
+                        .negativeCaching(true)
+                        .serveWhileStale(60)
+                        .cacheKeyPolicy(GoogleComputeBackendServiceCdnPolicyCacheKeyPolicy.builder()
+                                .includeHost(true)
+                                .includeProtocol(false)
+                                .includeQueryString(true)
+                                // q and author select the results of /posts/search
+                                .queryStringWhitelist(List.of("limit", "cursor", "q", "author"))
+                                .build()
+                        )
+                        .build()
+                )
                 .build()
         );
     }
@@ -0,0 +1,137 @@
+package com.mycompany.app.frontend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads the React build to the static site bucket with per-file caching metadata.
+ *
+ * Fingerprinted bundles get a year-long immutable max-age, index.html and other entry points are
+ * revalidated on every load, and text assets are stored gzip-compressed. Files are staged into one
+ * directory per metadata combination and synced with gsutil, entry points last so a new
+ * index.html never references assets that are not uploaded yet.
+ *
+ * Usage: StaticSiteUpload &lt;build dir&gt; &lt;bucket name&gt;
+ */
+public class StaticSiteUpload {
+
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String REVALIDATE = "public, max-age=0, must-revalidate";
+    static final String DEFAULT = "public, max-age=3600";
+
+    // Create React App emits e.g. static/js/main.8e3c2f1a.js and static/js/2.4b1d0c7e.chunk.js
+    private static final Pattern FINGERPRINTED = Pattern.compile(".*\\.[0-9a-f]{8,}(\\.chunk)?\\.[a-z0-9]+$");
+
+    private static final List<String> ENTRY_POINTS = List.of("index.html", "manifest.json", "asset-manifest.json", "service-worker.js", "robots.txt");
+
+    private static final List<String> COMPRESSIBLE = List.of(".html", ".js", ".css", ".json", ".map", ".svg", ".txt", ".ico");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 2) {
+            System.err.println("Usage: StaticSiteUpload <build dir> <bucket name>");
+            System.exit(1);
+        }
+        Path buildDir = Paths.get(args[0]).toAbsolutePath().normalize();
+        String bucket = args[1];
+
+        Map<String, List<Path>> groups = group(buildDir);
+        Path staging = Files.createTempDirectory("static-site-");
+
+        // Long-lived assets first, entry points last
+        List<String> order = new ArrayList<>(groups.keySet());
+        order.sort((a, b) -> Boolean.compare(a.startsWith(REVALIDATE), b.startsWith(REVALIDATE)));
+
+        try {
+            int i = 0;
+            for (String key : order) {
+                String[] metadata = key.split("\\|", -1);
+                String cacheControl = metadata[0];
+                boolean gzip = Boolean.parseBoolean(metadata[1]);
+
+                Path groupDir = staging.resolve(String.valueOf(i++));
+                for (Path file : groups.get(key)) {
+                    stage(buildDir, file, groupDir, gzip);
+                }
+                sync(groupDir, bucket, cacheControl, gzip);
+            }
+        } finally {
+            try (Stream<Path> walk = Files.walk(staging)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    static Map<String, List<Path>> group(Path buildDir) throws IOException {
+        Map<String, List<Path>> groups = new TreeMap<>();
+        try (Stream<Path> walk = Files.walk(buildDir)) {
+            for (Path file : walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                String name = buildDir.relativize(file).toString().replace('\\', '/');
+                String key = cacheControl(name) + "|" + compressible(name);
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(file);
+            }
+        }
+        return groups;
+    }
+
+    static String cacheControl(String name){
+        if (ENTRY_POINTS.contains(name)) {
+            return REVALIDATE;
+        }
+        if (FINGERPRINTED.matcher(name).matches()) {
+            return IMMUTABLE;
+        }
+        return DEFAULT;
+    }
+
+    static boolean compressible(String name){
+        String lower = name.toLowerCase(Locale.ROOT);
+        return COMPRESSIBLE.stream().anyMatch(lower::endsWith);
+    }
+
+    private static void stage(Path buildDir, Path file, Path groupDir, boolean gzip){
+        try {
+            Path target = groupDir.resolve(buildDir.relativize(file));
+            Files.createDirectories(target.getParent());
+            if (!gzip) {
+                Files.copy(file, target);
+                return;
+            }
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+                Files.copy(file, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not stage " + file, e);
+        }
+    }
+
+    private static void sync(Path groupDir, String bucket, String cacheControl, boolean gzip) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("gsutil", "-m", "-h", "Cache-Control:" + cacheControl));
+        if (gzip) {
+            command.addAll(List.of("-h", "Content-Encoding:gzip"));
+        }
+        command.addAll(List.of("rsync", "-r", "-c", groupDir.toString(), "gs://" + bucket));
+
+        System.out.println(String.join(" ", command));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("gsutil exited with " + exitCode);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mycompany.app.frontend;
+
+/**
+ * Transport settings of the site's HTTPS load balancer: HTTP/3 (QUIC) negotiation, the TLS policy
+ * and whether certificates are served from a Certificate Manager map instead of a single managed
+ * certificate.
+ */
+public class TransportProfile {
+
+    private final boolean quic;
+    private final String tlsProfile;
+    private final String minTlsVersion;
+    private final boolean certificateMap;
+
+    public TransportProfile(boolean quic, String tlsProfile, String minTlsVersion, boolean certificateMap){
+        this.quic = quic;
+        this.tlsProfile = tlsProfile;
+        this.minTlsVersion = minTlsVersion;
+        this.certificateMap = certificateMap;
+    }
+
+    public static TransportProfile modern(){
+        return new TransportProfile(true, "MODERN", "TLS_1_2", false);
+    }
+
+    public boolean isQuic(){
+        return this.quic;
+    }
+
+    /**
+     * The SSL policy profile (COMPATIBLE, MODERN or RESTRICTED), or null to use Google's default.
+     */
+    public String getTlsProfile(){
+        return this.tlsProfile;
+    }
+
+    public String getMinTlsVersion(){
+        return this.minTlsVersion;
+    }
+
+    public boolean isCertificateMap(){
+        return this.certificateMap;
+    }
+}
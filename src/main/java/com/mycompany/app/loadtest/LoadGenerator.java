@@ -0,0 +1,225 @@
+package com.mycompany.app.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load generator for the posts API, e.g. the local stand-in of
+ * cloudfunctions/api/local or a deployed environment.
+ *
+ * Runs the create, list and detail scenarios one after another, each with a fixed number of
+ * concurrent clients for a fixed duration, and prints throughput and p50/p95/p99 latency per
+ * scenario. Detail requests pick ids from the first page of the list.
+ *
+ * Usage: LoadGenerator [--url http://localhost:8080/posts] [--concurrency 16] [--duration 30]
+ *        [--limit 20] [--scenarios create,list,detail]
+ */
+public class LoadGenerator {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final int TIMEOUT_MS = 10_000;
+    private static final String USAGE = "Usage: LoadGenerator [--url http://localhost:8080/posts] [--concurrency 16] [--duration 30] [--limit 20] [--scenarios create,list,detail]";
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final long durationNanos;
+    private final int limit;
+
+    public LoadGenerator(String baseUrl, int concurrency, int durationSeconds, int limit){
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.concurrency = concurrency;
+        this.durationNanos = durationSeconds * 1_000_000_000L;
+        this.limit = limit;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing a value for " + args[args.length - 1] + "\n" + USAGE);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option, got: " + args[i] + "\n" + USAGE);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        LoadGenerator generator = new LoadGenerator(
+                options.getOrDefault("url", "http://localhost:8080/posts"),
+                Integer.parseInt(options.getOrDefault("concurrency", "16")),
+                Integer.parseInt(options.getOrDefault("duration", "30")),
+                Integer.parseInt(options.getOrDefault("limit", "20"))
+        );
+
+        System.out.println(String.format("%-8s %10s %8s %10s %9s %9s %9s", "scenario", "requests", "errors", "req/s", "p50 (ms)", "p95 (ms)", "p99 (ms)"));
+        for (String scenario : options.getOrDefault("scenarios", "create,list,detail").split(",")) {
+            generator.run(scenario.trim()).print(System.out);
+        }
+    }
+
+    public Result run(String scenario) throws Exception {
+        Request request;
+        switch (scenario) {
+            case "create":
+                request = () -> send("POST", baseUrl, "{\"author\":\"loadtest\",\"content\":\"post " + System.nanoTime() + "\"}");
+                break;
+            case "list":
+                request = () -> send("GET", baseUrl + "?limit=" + limit, null);
+                break;
+            case "detail":
+                List<String> ids = new ArrayList<>();
+                Matcher matcher = ID.matcher(send("GET", baseUrl + "?limit=100", null));
+                while (matcher.find()) {
+                    ids.add(matcher.group(1));
+                }
+                if (ids.isEmpty()) {
+                    throw new IllegalStateException("No posts to request details for, run the create scenario first");
+                }
+                request = () -> send("GET", baseUrl + "/" + ids.get(ThreadLocalRandom.current().nextInt(ids.size())) + "/detail", null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario \"" + scenario + "\", expected one of create, list, detail");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            long start = System.nanoTime();
+            long deadline = start + durationNanos;
+            List<Future<Client>> clients = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                clients.add(executor.submit(() -> {
+                    Client client = new Client();
+                    while (System.nanoTime() < deadline) {
+                        long sent = System.nanoTime();
+                        try {
+                            request.send();
+                            client.latencies.add(System.nanoTime() - sent);
+                        } catch (IOException | RuntimeException e) {
+                            // A failing request must not abort the scenario, whatever it throws
+                            client.errors++;
+                        }
+                    }
+                    return client;
+                }));
+            }
+
+            List<Long> latencies = new ArrayList<>();
+            int errors = 0;
+            for (Future<Client> client : clients) {
+                latencies.addAll(client.get().latencies);
+                errors += client.get().errors;
+            }
+            return new Result(scenario, latencies, errors, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String send(String method, String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        // Reading the body to the end, error bodies included, lets HttpURLConnection keep the
+        // connection alive
+        int status = connection.getResponseCode();
+        if (status >= 400) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                try (InputStream in = error) {
+                    drain(in);
+                }
+            }
+            throw new IOException(method + " " + url + " returned " + status);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8.name());
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    private interface Request {
+        void send() throws IOException;
+    }
+
+    private static class Client {
+        private final List<Long> latencies = new ArrayList<>();
+        private int errors;
+    }
+
+    public static class Result {
+
+        private final String scenario;
+        private final List<Long> latencies;
+        private final int errors;
+        private final long elapsedNanos;
+
+        Result(String scenario, List<Long> latencies, int errors, long elapsedNanos){
+            this.scenario = scenario;
+            this.latencies = new ArrayList<>(latencies);
+            Collections.sort(this.latencies);
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getThroughput(){
+            return latencies.size() / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Nearest-rank percentile of the successful requests' latency in milliseconds.
+         */
+        public double percentileMillis(double percentile){
+            if (latencies.isEmpty()) {
+                return Double.NaN;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * latencies.size());
+            return latencies.get(Math.max(0, rank - 1)) / 1e6;
+        }
+
+        public void print(PrintStream out){
+            out.println(String.format("%-8s %10d %8d %10.1f %9.1f %9.1f %9.1f",
+                    scenario,
+                    latencies.size(),
+                    errors,
+                    getThroughput(),
+                    percentileMillis(50),
+                    percentileMillis(95),
+                    percentileMillis(99)
+            ));
+        }
+    }
+}
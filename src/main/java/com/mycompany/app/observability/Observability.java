@@ -0,0 +1,253 @@
+package com.mycompany.app.observability;
+
+import com.hashicorp.cdktf.IResolveContext;
+import com.hashicorp.cdktf.IStringProducer;
+import com.hashicorp.cdktf.ITerraformDependable;
+import com.hashicorp.cdktf.Lazy;
+import com.hashicorp.cdktf.providers.google_beta.google_logging_metric.GoogleLoggingMetric;
+import com.hashicorp.cdktf.providers.google_beta.google_logging_metric.GoogleLoggingMetricBucketOptions;
+import com.hashicorp.cdktf.providers.google_beta.google_logging_metric.GoogleLoggingMetricBucketOptionsExponentialBuckets;
+import com.hashicorp.cdktf.providers.google_beta.google_logging_metric.GoogleLoggingMetricConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_logging_metric.GoogleLoggingMetricMetricDescriptor;
+import com.hashicorp.cdktf.providers.google_beta.google_logging_metric.GoogleLoggingMetricMetricDescriptorLabels;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_alert_policy.GoogleMonitoringAlertPolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_alert_policy.GoogleMonitoringAlertPolicyConditions;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_alert_policy.GoogleMonitoringAlertPolicyConditionsConditionThreshold;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_alert_policy.GoogleMonitoringAlertPolicyConditionsConditionThresholdAggregations;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_alert_policy.GoogleMonitoringAlertPolicyConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_alert_policy.GoogleMonitoringAlertPolicyDocumentation;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_dashboard.GoogleMonitoringDashboard;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_dashboard.GoogleMonitoringDashboardConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_notification_channel.GoogleMonitoringNotificationChannel;
+import com.hashicorp.cdktf.providers.google_beta.google_monitoring_notification_channel.GoogleMonitoringNotificationChannelConfig;
+import com.mycompany.app.posts.cloudfunctions.FunctionEndpoint;
+
+import software.constructs.Construct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dashboard and alert policies of one stack of an environment.
+ *
+ * Constructs attach what they deploy through the watch methods; every call adds charts to the
+ * stack's dashboard and alert policies with the environment's {@link ObservabilitySettings}
+ * thresholds. The dashboard is rendered at synth time, so it covers everything attached.
+ */
+public class Observability extends Construct {
+
+    private final String environment;
+    private final String user;
+    private final String project;
+    private final ObservabilitySettings settings;
+    private final List<String> notificationChannels = new ArrayList<>();
+    private final List<String> widgets = new ArrayList<>();
+
+    public Observability(Construct scope, String id, String environment, String user, String project, String title, ObservabilitySettings settings){
+        super(scope, id);
+        this.environment = environment;
+        this.user = user;
+        this.project = project;
+        this.settings = settings;
+
+        List<String> emails = settings.getNotificationEmails();
+        for (int i = 0; i < emails.size(); i++) {
+            String email = emails.get(i);
+            GoogleMonitoringNotificationChannel channel = new GoogleMonitoringNotificationChannel(this, "alert-email-" + i + "-" + environment + "-" + user, GoogleMonitoringNotificationChannelConfig.builder()
+                    .displayName(title + " " + environment + " alerts (" + email + ")")
+                    .project(project)
+                    .type("email")
+                    .labels(new HashMap<>(){{
+                        put("email_address", email);
+                    }})
+                    .build()
+            );
+            notificationChannels.add(channel.getId());
+        }
+
+        new GoogleMonitoringDashboard(this, "dashboard-" + environment + "-" + user, GoogleMonitoringDashboardConfig.builder()
+                .project(project)
+                .dashboardJson(Lazy.stringValue(new IStringProducer() {
+                    @Override
+                    public String produce(IResolveContext context){
+                        return "{\"displayName\":" + quote(title + " " + environment + "-" + user)
+                                + ",\"gridLayout\":{\"columns\":\"2\",\"widgets\":[" + String.join(",", widgets) + "]}}";
+                    }
+                }))
+                .build()
+        );
+    }
+
+    /**
+     * Latency and instances of the API functions, and the pool acquire time they log. All
+     * endpoints share one function name, one per region.
+     */
+    public void watchFunctions(List<FunctionEndpoint> endpoints){
+        FunctionEndpoint endpoint = endpoints.get(0);
+        String name = endpoint.getFunctionName();
+
+        String resource;
+        String latencyMetric;
+        String instanceMetric;
+        String regionLabel;
+        double latencyThreshold;
+        if (endpoint.isSecondGen()) {
+            resource = "resource.type=\"cloud_run_revision\" resource.label.service_name=\"" + name + "\"";
+            latencyMetric = "run.googleapis.com/request_latencies";
+            instanceMetric = "run.googleapis.com/container/instance_count";
+            regionLabel = "resource.label.location";
+            latencyThreshold = settings.getLatencyP95Ms();
+        } else {
+            resource = "resource.type=\"cloud_function\" resource.label.function_name=\"" + name + "\"";
+            latencyMetric = "cloudfunctions.googleapis.com/function/execution_times";
+            instanceMetric = "cloudfunctions.googleapis.com/function/active_instances";
+            regionLabel = "resource.label.region";
+            // 1st gen execution times are reported in nanoseconds
+            latencyThreshold = settings.getLatencyP95Ms() * 1_000_000.0;
+        }
+
+        String latency = "metric.type=\"" + latencyMetric + "\" " + resource;
+        widgets.add(chart("API latency p95 by region", latency, "ALIGN_PERCENTILE_95", "REDUCE_MAX", regionLabel));
+        widgets.add(chart("API instances by region", "metric.type=\"" + instanceMetric + "\" " + resource, "ALIGN_MEAN", "REDUCE_SUM", regionLabel));
+        alert("api-latency", "API latency p95 above " + settings.getLatencyP95Ms() + " ms", latency, "ALIGN_PERCENTILE_95", "REDUCE_MAX", latencyThreshold, List.of());
+
+        // Distribution of the poolAcquireMs values the API logs when it takes a Knex connection
+        GoogleLoggingMetric poolAcquire = new GoogleLoggingMetric(this, "pool-acquire-metric-" + environment + "-" + user, GoogleLoggingMetricConfig.builder()
+                .name("posts/pool-acquire-ms-" + environment + "-" + user)
+                .project(project)
+                .filter(resource.replace("resource.label.", "resource.labels.") + " jsonPayload.poolAcquireMs>=0")
+                .metricDescriptor(GoogleLoggingMetricMetricDescriptor.builder()
+                        .metricKind("DELTA")
+                        .valueType("DISTRIBUTION")
+                        .unit("ms")
+                        .labels(List.of(GoogleLoggingMetricMetricDescriptorLabels.builder()
+                                .key("pool")
+                                .valueType("STRING")
+                                .description("write or read pool")
+                                .build()
+                        ))
+                        .build()
+                )
+                .valueExtractor("EXTRACT(jsonPayload.poolAcquireMs)")
+                .labelExtractors(new HashMap<>(){{
+                    put("pool", "EXTRACT(jsonPayload.pool)");
+                }})
+                .bucketOptions(GoogleLoggingMetricBucketOptions.builder()
+                        .exponentialBuckets(GoogleLoggingMetricBucketOptionsExponentialBuckets.builder()
+                                .numFiniteBuckets(24)
+                                .growthFactor(2)
+                                .scale(0.1)
+                                .build()
+                        )
+                        .build()
+                )
+                .build()
+        );
+
+        String acquire = "metric.type=\"logging.googleapis.com/user/" + poolAcquire.getName() + "\" " + resource.substring(0, resource.indexOf(' '));
+        widgets.add(chart("Knex pool acquire time p95", acquire, "ALIGN_PERCENTILE_95", "REDUCE_MAX", "metric.label.pool"));
+        alert("pool-acquire", "Knex pool acquire p95 above " + settings.getPoolAcquireP95Ms() + " ms", acquire, "ALIGN_PERCENTILE_95", "REDUCE_MAX", settings.getPoolAcquireP95Ms(), List.of(poolAcquire));
+    }
+
+    /**
+     * CPU and connections of a Cloud SQL instance.
+     */
+    public void watchDatabase(String instanceName){
+        String resource = "resource.type=\"cloudsql_database\" resource.label.database_id=\"" + project + ":" + instanceName + "\"";
+        String cpu = "metric.type=\"cloudsql.googleapis.com/database/cpu/utilization\" " + resource;
+        String connections = "metric.type=\"cloudsql.googleapis.com/database/postgresql/num_backends\" " + resource;
+
+        widgets.add(chart("Cloud SQL CPU utilization", cpu, "ALIGN_MEAN", "REDUCE_MAX"));
+        widgets.add(chart("Cloud SQL connections", connections, "ALIGN_MEAN", "REDUCE_SUM"));
+        alert("db-cpu", "Cloud SQL CPU above " + settings.getDbCpuPercent() + "%", cpu, "ALIGN_MEAN", "REDUCE_MAX", settings.getDbCpuPercent() / 100.0, List.of());
+        alert("db-connections", "Cloud SQL connections above " + settings.getDbConnections(), connections, "ALIGN_MEAN", "REDUCE_SUM", settings.getDbConnections(), List.of());
+    }
+
+    /**
+     * CDN hit ratio and end-to-end latency of the external HTTPS load balancer.
+     */
+    public void watchLoadBalancer(String urlMapName){
+        String resource = "resource.type=\"https_lb_rule\" resource.label.url_map_name=\"" + urlMapName + "\"";
+        String requests = "metric.type=\"loadbalancing.googleapis.com/https/request_count\" " + resource;
+        String latency = "metric.type=\"loadbalancing.googleapis.com/https/total_latencies\" " + resource;
+
+        widgets.add(ratioChart("CDN hit ratio", requests + " metric.label.cache_result=\"HIT\"", requests));
+        widgets.add(chart("Load balancer latency p95", latency, "ALIGN_PERCENTILE_95", "REDUCE_MAX"));
+        alert("lb-latency", "Load balancer latency p95 above " + settings.getLatencyP95Ms() + " ms", latency, "ALIGN_PERCENTILE_95", "REDUCE_MAX", settings.getLatencyP95Ms(), List.of());
+    }
+
+    private void alert(String name, String displayName, String filter, String aligner, String reducer, double threshold, List<ITerraformDependable> dependsOn){
+        new GoogleMonitoringAlertPolicy(this, name + "-alert-" + environment + "-" + user, GoogleMonitoringAlertPolicyConfig.builder()
+                .displayName(displayName + " (" + environment + "-" + user + ")")
+                .project(project)
+                .combiner("OR")
+                .conditions(List.of(GoogleMonitoringAlertPolicyConditions.builder()
+                        .displayName(displayName)
+                        .conditionThreshold(GoogleMonitoringAlertPolicyConditionsConditionThreshold.builder()
+                                .filter(filter)
+                                .comparison("COMPARISON_GT")
+                                .thresholdValue(threshold)
+                                .duration("300s")
+                                .aggregations(List.of(GoogleMonitoringAlertPolicyConditionsConditionThresholdAggregations.builder()
+                                        .alignmentPeriod("60s")
+                                        .perSeriesAligner(aligner)
+                                        .crossSeriesReducer(reducer)
+                                        .build()
+                                ))
+                                .build()
+                        )
+                        .build()
+                ))
+                .notificationChannels(notificationChannels)
+                .documentation(GoogleMonitoringAlertPolicyDocumentation.builder()
+                        .content("Threshold set by the \"observability\" settings of the " + environment + " environment in cdktf.json.")
+                        .mimeType("text/markdown")
+                        .build()
+                )
+                .userLabels(new HashMap<>(){{
+                    put("environment", environment);
+                }})
+                .dependsOn(dependsOn)
+                .build()
+        );
+    }
+
+    private static String chart(String title, String filter, String aligner, String reducer, String... groupBy){
+        return "{\"title\":" + quote(title) + ",\"xyChart\":{\"dataSets\":[{\"plotType\":\"LINE\",\"timeSeriesQuery\":{\"timeSeriesFilter\":{\"filter\":" + quote(filter)
+                + ",\"aggregation\":" + aggregation(aligner, reducer, groupBy) + "}}}]}}";
+    }
+
+    private static String ratioChart(String title, String numerator, String denominator){
+        String aggregation = aggregation("ALIGN_RATE", "REDUCE_SUM");
+        return "{\"title\":" + quote(title) + ",\"xyChart\":{\"dataSets\":[{\"plotType\":\"LINE\",\"timeSeriesQuery\":{\"timeSeriesFilterRatio\":{"
+                + "\"numerator\":{\"filter\":" + quote(numerator) + ",\"aggregation\":" + aggregation + "},"
+                + "\"denominator\":{\"filter\":" + quote(denominator) + ",\"aggregation\":" + aggregation + "}}}}]}}";
+    }
+
+    private static String aggregation(String aligner, String reducer, String... groupBy){
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("alignmentPeriod", quote("60s"));
+        fields.put("perSeriesAligner", quote(aligner));
+        fields.put("crossSeriesReducer", quote(reducer));
+        if (groupBy.length > 0) {
+            List<String> quoted = new ArrayList<>();
+            for (String field : groupBy) {
+                quoted.add(quote(field));
+            }
+            fields.put("groupByFields", "[" + String.join(",", quoted) + "]");
+        }
+
+        List<String> entries = new ArrayList<>();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            entries.add(quote(field.getKey()) + ":" + field.getValue());
+        }
+        return "{" + String.join(",", entries) + "}";
+    }
+
+    static String quote(String value){
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
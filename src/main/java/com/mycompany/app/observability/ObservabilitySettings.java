@@ -0,0 +1,63 @@
+package com.mycompany.app.observability;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Alert thresholds of an environment's {@link Observability} construct. Latencies are p95 values
+ * in milliseconds; alerts notify the listed email addresses.
+ */
+public class ObservabilitySettings {
+
+    private final boolean enabled;
+    private final int latencyP95Ms;
+    private final int poolAcquireP95Ms;
+    private final int dbCpuPercent;
+    private final int dbConnections;
+    private final List<String> notificationEmails;
+
+    public ObservabilitySettings(boolean enabled, int latencyP95Ms, int poolAcquireP95Ms, int dbCpuPercent, int dbConnections, List<String> notificationEmails){
+        if (dbCpuPercent < 1 || dbCpuPercent > 100) {
+            throw new IllegalArgumentException("dbCpuPercent must be between 1 and 100, got " + dbCpuPercent);
+        }
+        this.enabled = enabled;
+        this.latencyP95Ms = latencyP95Ms;
+        this.poolAcquireP95Ms = poolAcquireP95Ms;
+        this.dbCpuPercent = dbCpuPercent;
+        this.dbConnections = dbConnections;
+        this.notificationEmails = Collections.unmodifiableList(new ArrayList<>(notificationEmails));
+    }
+
+    public static ObservabilitySettings defaults(){
+        return new ObservabilitySettings(true, 1000, 250, 80, 80, List.of());
+    }
+
+    public static ObservabilitySettings disabled(){
+        return new ObservabilitySettings(false, 1000, 250, 80, 80, List.of());
+    }
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+
+    public int getLatencyP95Ms(){
+        return this.latencyP95Ms;
+    }
+
+    public int getPoolAcquireP95Ms(){
+        return this.poolAcquireP95Ms;
+    }
+
+    public int getDbCpuPercent(){
+        return this.dbCpuPercent;
+    }
+
+    public int getDbConnections(){
+        return this.dbConnections;
+    }
+
+    public List<String> getNotificationEmails(){
+        return this.notificationEmails;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mycompany.app.posts;
+
+/**
+ * Settings of the asynchronous write path: when enabled, POST /posts publishes to the
+ * {@link WriteQueue} topic and returns 202, and a scheduled consumer inserts the queued posts in
+ * batches of up to batchSize rows.
+ */
+public class AsyncWriteSettings {
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final String schedule;
+
+    public AsyncWriteSettings(boolean enabled, int batchSize, String schedule){
+        if (batchSize < 1 || batchSize > 1000) {
+            throw new IllegalArgumentException("batchSize must be between 1 and 1000, got " + batchSize);
+        }
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.schedule = schedule;
+    }
+
+    public static AsyncWriteSettings disabled(){
+        return new AsyncWriteSettings(false, 500, "* * * * *");
+    }
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+
+    public int getBatchSize(){
+        return this.batchSize;
+    }
+
+    public String getSchedule(){
+        return this.schedule;
+    }
+}
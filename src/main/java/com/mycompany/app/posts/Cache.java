@@ -0,0 +1,53 @@
+package com.mycompany.app.posts;
+
+import com.hashicorp.cdktf.Token;
+import com.hashicorp.cdktf.providers.google_beta.google_redis_instance.GoogleRedisInstance;
+import com.hashicorp.cdktf.providers.google_beta.google_redis_instance.GoogleRedisInstanceConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_service_networking_connection.GoogleServiceNetworkingConnection;
+
+import com.mycompany.app.Environment;
+
+import software.constructs.Construct;
+
+import java.util.HashMap;
+import java.util.List;
+
+
+public class Cache extends Construct {
+
+    private String cacheHost;
+
+    public Cache(Construct scope, String id, Environment env, String user, String project, GoogleServiceNetworkingConnection privateVpcConnection, String vpcId){
+        super(scope, id);
+
+        String environment = env.getEnvironment();
+        CacheSettings settings = env.getCache();
+
+        // Private service access puts the instance in the same peered range as Cloud SQL, so the
+        // functions reach it through their existing VPC connectors
+        GoogleRedisInstance redis = new GoogleRedisInstance(this, "posts-cache-" + environment + "-" + user, GoogleRedisInstanceConfig.builder()
+                .name("posts-cache-" + environment + "-" + user)
+                .project(project)
+                .region(env.getRegion())
+                .tier(settings.getTier())
+                .memorySizeGb(settings.getMemorySizeGb())
+                .redisVersion("REDIS_6_X")
+                .authorizedNetwork(vpcId)
+                .connectMode("PRIVATE_SERVICE_ACCESS")
+                .redisConfigs(new HashMap<>(){{
+                    put("maxmemory-policy", "allkeys-lru");
+                }})
+                .labels(new HashMap<>(){{
+                    put("environment", environment);
+                }})
+                .dependsOn(List.of(privateVpcConnection))
+                .build()
+        );
+
+        this.cacheHost = redis.getHost() + ":" + Token.asString(redis.getPort());
+    }
+
+    public String getCacheHost(){
+        return this.cacheHost;
+    }
+}
@@ -0,0 +1,49 @@
+package com.mycompany.app.posts;
+
+/**
+ * Settings of the Memorystore for Redis instance that {@link Cache} provisions for the API's
+ * read cache, and how long the API keeps list pages and post details in it.
+ */
+public class CacheSettings {
+
+    private final boolean enabled;
+    private final String tier;
+    private final int memorySizeGb;
+    private final int listTtlSeconds;
+    private final int detailTtlSeconds;
+
+    public CacheSettings(boolean enabled, String tier, int memorySizeGb, int listTtlSeconds, int detailTtlSeconds){
+        if (listTtlSeconds < 1 || detailTtlSeconds < 1) {
+            throw new IllegalArgumentException("Cache TTLs must be at least one second, got list " + listTtlSeconds + " and detail " + detailTtlSeconds);
+        }
+        this.enabled = enabled;
+        this.tier = tier;
+        this.memorySizeGb = memorySizeGb;
+        this.listTtlSeconds = listTtlSeconds;
+        this.detailTtlSeconds = detailTtlSeconds;
+    }
+
+    public static CacheSettings disabled(){
+        return new CacheSettings(false, "BASIC", 1, 10, 300);
+    }
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+
+    public String getTier(){
+        return this.tier;
+    }
+
+    public int getMemorySizeGb(){
+        return this.memorySizeGb;
+    }
+
+    public int getListTtlSeconds(){
+        return this.listTtlSeconds;
+    }
+
+    public int getDetailTtlSeconds(){
+        return this.detailTtlSeconds;
+    }
+}
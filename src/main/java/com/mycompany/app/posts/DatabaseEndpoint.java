@@ -0,0 +1,68 @@
+package com.mycompany.app.posts;
+
+import java.util.List;
+
+/**
+ * How the API reaches the posts database: the host:port lists it writes to and reads from, the
+ * database names to use for each, the credentials and the extensions the migrations create.
+ *
+ * {@link Storage} hands out one per region; a {@link Pooler} routes it through PgBouncer.
+ */
+public class DatabaseEndpoint {
+
+    private final String host;
+    private final String readHost;
+    private final String name;
+    private final String readName;
+    private final String userName;
+    private final String password;
+    private final List<String> extensions;
+
+    public DatabaseEndpoint(String host, String readHost, String name, String readName, String userName, String password, List<String> extensions){
+        this.host = host;
+        this.readHost = readHost;
+        this.name = name;
+        this.readName = readName;
+        this.userName = userName;
+        this.password = password;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Sends writes and reads to the same host, which tells them apart by database name.
+     */
+    public DatabaseEndpoint routedThrough(String host, String readName){
+        return new DatabaseEndpoint(host, host, this.name, readName, this.userName, this.password, this.extensions);
+    }
+
+    public String getHost(){
+        return this.host;
+    }
+
+    /**
+     * Comma-separated host:port list the API spreads its reads over.
+     */
+    public String getReadHost(){
+        return this.readHost;
+    }
+
+    public String getName(){
+        return this.name;
+    }
+
+    public String getReadName(){
+        return this.readName;
+    }
+
+    public String getUserName(){
+        return this.userName;
+    }
+
+    public String getPassword(){
+        return this.password;
+    }
+
+    public List<String> getExtensions(){
+        return this.extensions;
+    }
+}
@@ -0,0 +1,127 @@
+package com.mycompany.app.posts;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizing and tuning of the Cloud SQL instance created by {@link Storage}.
+ *
+ * micro keeps the original shared-core setup; small, medium and large are dedicated-core presets
+ * with SSD storage, tuned Postgres flags, Query Insights and backups. medium and large also add
+ * read replicas that serve the API's GET routes.
+ */
+public class DatabaseProfile {
+
+    private final String name;
+    private final String tier;
+    private final String diskType;
+    private final int diskSizeGb;
+    private final boolean diskAutoresize;
+    private final int diskAutoresizeLimitGb;
+    private final Map<String, String> flags;
+    private final boolean queryInsights;
+    private final boolean backups;
+    private final int readReplicas;
+
+    public DatabaseProfile(String name, String tier, String diskType, int diskSizeGb, boolean diskAutoresize, int diskAutoresizeLimitGb, Map<String, String> flags, boolean queryInsights, boolean backups, int readReplicas){
+        this.name = name;
+        this.tier = tier;
+        this.diskType = diskType;
+        this.diskSizeGb = diskSizeGb;
+        this.diskAutoresize = diskAutoresize;
+        this.diskAutoresizeLimitGb = diskAutoresizeLimitGb;
+        this.flags = Collections.unmodifiableMap(new LinkedHashMap<>(flags));
+        this.queryInsights = queryInsights;
+        this.backups = backups;
+        this.readReplicas = readReplicas;
+    }
+
+    public static DatabaseProfile micro(){
+        return new DatabaseProfile("micro", "db-f1-micro", "PD_SSD", 10, true, 0, Map.of(), false, false, 0);
+    }
+
+    public static DatabaseProfile small(){
+        return new DatabaseProfile("small", "db-custom-1-3840", "PD_SSD", 20, true, 100, flags(100, "4096", "1000"), true, true, 0);
+    }
+
+    public static DatabaseProfile medium(){
+        return new DatabaseProfile("medium", "db-custom-2-7680", "PD_SSD", 50, true, 500, flags(200, "8192", "500"), true, true, 1);
+    }
+
+    public static DatabaseProfile large(){
+        return new DatabaseProfile("large", "db-custom-8-30720", "PD_SSD", 250, true, 2000, flags(500, "16384", "250"), true, true, 2);
+    }
+
+    public static DatabaseProfile named(String name){
+        switch (name) {
+            case "micro":
+                return micro();
+            case "small":
+                return small();
+            case "medium":
+                return medium();
+            case "large":
+                return large();
+            default:
+                throw new IllegalArgumentException("Unknown database profile \"" + name + "\", expected one of micro, small, medium, large");
+        }
+    }
+
+    private static Map<String, String> flags(int maxConnections, String workMemKb, String logMinDurationMs){
+        Map<String, String> flags = new LinkedHashMap<>();
+        flags.put("max_connections", String.valueOf(maxConnections));
+        flags.put("work_mem", workMemKb);
+        flags.put("random_page_cost", "1.1");
+        flags.put("log_min_duration_statement", logMinDurationMs);
+        return flags;
+    }
+
+    public DatabaseProfile withTier(String tier){
+        return new DatabaseProfile(this.name, tier, this.diskType, this.diskSizeGb, this.diskAutoresize, this.diskAutoresizeLimitGb, this.flags, this.queryInsights, this.backups, this.readReplicas);
+    }
+
+    public DatabaseProfile withReadReplicas(int readReplicas){
+        return new DatabaseProfile(this.name, this.tier, this.diskType, this.diskSizeGb, this.diskAutoresize, this.diskAutoresizeLimitGb, this.flags, this.queryInsights, this.backups, readReplicas);
+    }
+
+    public String getName(){
+        return this.name;
+    }
+
+    public String getTier(){
+        return this.tier;
+    }
+
+    public String getDiskType(){
+        return this.diskType;
+    }
+
+    public int getDiskSizeGb(){
+        return this.diskSizeGb;
+    }
+
+    public boolean isDiskAutoresize(){
+        return this.diskAutoresize;
+    }
+
+    public int getDiskAutoresizeLimitGb(){
+        return this.diskAutoresizeLimitGb;
+    }
+
+    public Map<String, String> getFlags(){
+        return this.flags;
+    }
+
+    public boolean isQueryInsights(){
+        return this.queryInsights;
+    }
+
+    public boolean isBackups(){
+        return this.backups;
+    }
+
+    public int getReadReplicas(){
+        return this.readReplicas;
+    }
+}
@@ -0,0 +1,326 @@
+package com.mycompany.app.posts;
+
+import com.hashicorp.cdktf.TerraformResourceLifecycle;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_firewall.GoogleComputeFirewall;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_firewall.GoogleComputeFirewallAllow;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_firewall.GoogleComputeFirewallConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_forwarding_rule.GoogleComputeForwardingRule;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_forwarding_rule.GoogleComputeForwardingRuleConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_health_check.GoogleComputeHealthCheck;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_health_check.GoogleComputeHealthCheckConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_health_check.GoogleComputeHealthCheckTcpHealthCheck;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_instance_template.GoogleComputeInstanceTemplate;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_instance_template.GoogleComputeInstanceTemplateConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_instance_template.GoogleComputeInstanceTemplateDisk;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_instance_template.GoogleComputeInstanceTemplateNetworkInterface;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_instance_template.GoogleComputeInstanceTemplateServiceAccount;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_backend_service.GoogleComputeRegionBackendService;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_backend_service.GoogleComputeRegionBackendServiceBackend;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_backend_service.GoogleComputeRegionBackendServiceConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_instance_group_manager.GoogleComputeRegionInstanceGroupManager;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_instance_group_manager.GoogleComputeRegionInstanceGroupManagerAutoHealingPolicies;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_instance_group_manager.GoogleComputeRegionInstanceGroupManagerConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_instance_group_manager.GoogleComputeRegionInstanceGroupManagerUpdatePolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_region_instance_group_manager.GoogleComputeRegionInstanceGroupManagerVersion;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_router.GoogleComputeRouter;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_router.GoogleComputeRouterConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_router_nat.GoogleComputeRouterNat;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_router_nat.GoogleComputeRouterNatConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_subnetwork.GoogleComputeSubnetwork;
+import com.hashicorp.cdktf.providers.google_beta.google_compute_subnetwork.GoogleComputeSubnetworkConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_secret_manager_secret_iam_member.GoogleSecretManagerSecretIamMember;
+import com.hashicorp.cdktf.providers.google_beta.google_secret_manager_secret_iam_member.GoogleSecretManagerSecretIamMemberConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_service_account.GoogleServiceAccount;
+import com.hashicorp.cdktf.providers.google_beta.google_service_account.GoogleServiceAccountConfig;
+import com.mycompany.app.Environment;
+import com.mycompany.app.ResourceNames;
+
+import software.constructs.Construct;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PgBouncer in transaction pooling mode for the API of one region.
+ *
+ * The instances run in an autohealing managed instance group behind an internal TCP load
+ * balancer, whose address stays the same when instances are replaced. They read the database
+ * password from Secret Manager at boot with their own service account, so it never appears in
+ * the instance metadata. Writes use the database's own name and go to the primary; reads use
+ * {@link #getReadName()} and go to the region's read replicas, or to the primary when the region
+ * has none.
+ */
+public class Pooler extends Construct {
+
+    public static final int PORT = 6432;
+
+    // Sources of Google Cloud load balancer health checks
+    private static final List<String> HEALTH_CHECK_RANGES = List.of("35.191.0.0/16", "130.211.0.0/22");
+
+    private String poolerHost;
+    private String readName;
+
+    public Pooler(Construct scope, String id, Environment env, String user, String project, String region, String vpcId, List<String> clientRanges, Storage storage, String dbPasswordSecret){
+        super(scope, id);
+
+        String environment = env.getEnvironment();
+        PoolerSettings settings = env.getPooler();
+        int regionIndex = env.getRegions().indexOf(region);
+        // Firewalls, templates and health checks are global, so secondary regions get their own names
+        String suffix = environment + "-" + user + (regionIndex == 0 ? "" : "-" + regionIndex);
+
+        GoogleComputeSubnetwork subnet = new GoogleComputeSubnetwork(this, "pooler-subnet-" + suffix, GoogleComputeSubnetworkConfig.builder()
+                .name("pooler-subnet-" + suffix)
+                .project(project)
+                .region(region)
+                .network(vpcId)
+                .ipCidrRange(subnetRange(regionIndex))
+                .privateIpGoogleAccess(true)
+                .build()
+        );
+
+        // The instances have no external address; NAT lets them pull the PgBouncer image
+        GoogleComputeRouter router = new GoogleComputeRouter(this, "pooler-router-" + suffix, GoogleComputeRouterConfig.builder()
+                .name("pooler-router-" + suffix)
+                .project(project)
+                .region(region)
+                .network(vpcId)
+                .build()
+        );
+
+        new GoogleComputeRouterNat(this, "pooler-nat-" + suffix, GoogleComputeRouterNatConfig.builder()
+                .name("pooler-nat-" + suffix)
+                .project(project)
+                .region(region)
+                .router(router.getName())
+                .natIpAllocateOption("AUTO_ONLY")
+                .sourceSubnetworkIpRangesToNat("ALL_SUBNETWORKS_ALL_IP_RANGES")
+                .build()
+        );
+
+        List<String> sourceRanges = new ArrayList<>(clientRanges);
+        sourceRanges.addAll(HEALTH_CHECK_RANGES);
+        new GoogleComputeFirewall(this, "pooler-firewall-" + suffix, GoogleComputeFirewallConfig.builder()
+                .name("pooler-firewall-" + suffix)
+                .project(project)
+                .network(vpcId)
+                .direction("INGRESS")
+                .sourceRanges(sourceRanges)
+                .targetTags(List.of("pgbouncer"))
+                .allow(List.of(GoogleComputeFirewallAllow.builder()
+                        .protocol("tcp")
+                        .ports(List.of(String.valueOf(PORT)))
+                        .build()
+                ))
+                .build()
+        );
+
+        GoogleServiceAccount serviceAccount = new GoogleServiceAccount(this, "pooler-service-account-" + suffix, GoogleServiceAccountConfig.builder()
+                .accountId(ResourceNames.hashed("pgbouncer-", environment, user, region))
+                .project(project)
+                .displayName("PgBouncer of " + environment + " in " + region)
+                .build()
+        );
+
+        GoogleSecretManagerSecretIamMember secretAccess = new GoogleSecretManagerSecretIamMember(this, "pooler-secret-access-" + suffix, GoogleSecretManagerSecretIamMemberConfig.builder()
+                .project(project)
+                .secretId(dbPasswordSecret)
+                .role("roles/secretmanager.secretAccessor")
+                .member("serviceAccount:" + serviceAccount.getEmail())
+                .build()
+        );
+
+        this.readName = storage.getDbName() + "-read";
+
+        GoogleComputeInstanceTemplate template = new GoogleComputeInstanceTemplate(this, "pooler-template-" + suffix, GoogleComputeInstanceTemplateConfig.builder()
+                .namePrefix("pooler-" + suffix + "-")
+                .project(project)
+                .region(region)
+                .machineType(settings.getMachineType())
+                .tags(List.of("pgbouncer"))
+                .disk(List.of(GoogleComputeInstanceTemplateDisk.builder()
+                        .sourceImage("cos-cloud/cos-stable")
+                        .boot(true)
+                        .autoDelete(true)
+                        .build()
+                ))
+                .networkInterface(List.of(GoogleComputeInstanceTemplateNetworkInterface.builder()
+                        .subnetwork(subnet.getId())
+                        .build()
+                ))
+                .serviceAccount(GoogleComputeInstanceTemplateServiceAccount.builder()
+                        .email(serviceAccount.getEmail())
+                        .scopes(List.of("cloud-platform"))
+                        .build()
+                )
+                .metadataStartupScript(startupScript(project, dbPasswordSecret, settings, storage.getDbPrivateIp(), storage.getReadIps(region), storage.getDbName(), storage.getDbUserName()))
+                // The group must move to the new template before the old one can be deleted
+                .lifecycle(TerraformResourceLifecycle.builder()
+                        .createBeforeDestroy(true)
+                        .build()
+                )
+                .dependsOn(List.of(secretAccess))
+                .build()
+        );
+
+        GoogleComputeHealthCheck healthCheck = new GoogleComputeHealthCheck(this, "pooler-health-check-" + suffix, GoogleComputeHealthCheckConfig.builder()
+                .name("pooler-health-check-" + suffix)
+                .project(project)
+                .checkIntervalSec(10)
+                .timeoutSec(5)
+                .healthyThreshold(2)
+                .unhealthyThreshold(3)
+                .tcpHealthCheck(GoogleComputeHealthCheckTcpHealthCheck.builder()
+                        .port(PORT)
+                        .build()
+                )
+                .build()
+        );
+
+        List<String> zones = new ArrayList<>();
+        for (String zone : settings.getZones()) {
+            zones.add(region + "-" + zone);
+        }
+        // Regional groups spread over three zones unless told otherwise. A fixed surge must be at least
+        // one per zone, so rollouts bring up a replacement in every zone before taking an old one down
+        int zoneCount = zones.isEmpty() ? 3 : zones.size();
+
+        GoogleComputeRegionInstanceGroupManagerConfig.Builder groupConfig = GoogleComputeRegionInstanceGroupManagerConfig.builder()
+                .name("pooler-" + suffix)
+                .project(project)
+                .region(region)
+                .baseInstanceName("pooler-" + suffix)
+                .targetSize(settings.getInstances())
+                .version(List.of(GoogleComputeRegionInstanceGroupManagerVersion.builder()
+                        .name("pgbouncer")
+                        .instanceTemplate(template.getSelfLink())
+                        .build()
+                ))
+                .autoHealingPolicies(GoogleComputeRegionInstanceGroupManagerAutoHealingPolicies.builder()
+                        .healthCheck(healthCheck.getId())
+                        .initialDelaySec(180)
+                        .build()
+                )
+                .updatePolicy(GoogleComputeRegionInstanceGroupManagerUpdatePolicy.builder()
+                        .type("PROACTIVE")
+                        .minimalAction("REPLACE")
+                        .replacementMethod("SUBSTITUTE")
+                        .maxSurgeFixed(zoneCount)
+                        .maxUnavailableFixed(0)
+                        .build()
+                );
+        if (!zones.isEmpty()) {
+            groupConfig.distributionPolicyZones(zones);
+        }
+        GoogleComputeRegionInstanceGroupManager group = new GoogleComputeRegionInstanceGroupManager(this, "pooler-group-" + suffix, groupConfig.build());
+
+        GoogleComputeRegionBackendService backend = new GoogleComputeRegionBackendService(this, "pooler-backend-" + suffix, GoogleComputeRegionBackendServiceConfig.builder()
+                .name("pooler-backend-" + suffix)
+                .project(project)
+                .region(region)
+                .loadBalancingScheme("INTERNAL")
+                .protocol("TCP")
+                .healthChecks(List.of(healthCheck.getId()))
+                .backend(List.of(GoogleComputeRegionBackendServiceBackend.builder()
+                        .group(group.getInstanceGroup())
+                        .balancingMode("CONNECTION")
+                        .build()
+                ))
+                .build()
+        );
+
+        GoogleComputeForwardingRule forwardingRule = new GoogleComputeForwardingRule(this, "pooler-forwarding-rule-" + suffix, GoogleComputeForwardingRuleConfig.builder()
+                .name("pooler-" + suffix)
+                .project(project)
+                .region(region)
+                .loadBalancingScheme("INTERNAL")
+                .ipProtocol("TCP")
+                .ports(List.of(String.valueOf(PORT)))
+                .network(vpcId)
+                .subnetwork(subnet.getId())
+                .backendService(backend.getId())
+                .build()
+        );
+
+        this.poolerHost = forwardingRule.getIpAddress() + ":" + PORT;
+    }
+
+    /**
+     * Reads the password from Secret Manager, retrying until the service account has been granted
+     * access, and hands it to the container through a root-only env file instead of the command
+     * line. The configuration maps the database's name to the primary and readName to the read
+     * instances, which PgBouncer uses round-robin.
+     */
+    private String startupScript(String project, String dbPasswordSecret, PoolerSettings settings, String primaryIp, List<String> readIps, String dbName, String dbUserName){
+        return String.join("\n",
+                "#!/bin/bash",
+                "set -o pipefail",
+                "umask 077",
+                "mkdir -p /etc/pgbouncer",
+                "",
+                "fetch_password() {",
+                "  local token",
+                "  token=$(curl -sf -H 'Metadata-Flavor: Google' http://metadata.google.internal/computeMetadata/v1/instance/service-accounts/default/token \\",
+                "    | sed -E 's/.*\"access_token\":\"([^\"]+)\".*/\\1/') || return 1",
+                "  curl -sf -H \"Authorization: Bearer $token\" https://secretmanager.googleapis.com/v1/projects/" + project + "/secrets/" + dbPasswordSecret + "/versions/latest:access \\",
+                "    | tr -d ' \\n' | sed -E 's/.*\"data\":\"([^\"]+)\".*/\\1/' | base64 -d",
+                "}",
+                "until DB_PASSWORD=$(fetch_password); do sleep 5; done",
+                "printf 'DB_USER=%s\\nDB_PASSWORD=%s\\n' '" + dbUserName + "' \"$DB_PASSWORD\" > /etc/pgbouncer/env",
+                "",
+                "cat > /etc/pgbouncer/pgbouncer.ini <<'EOF'",
+                "[databases]",
+                dbName + " = host=" + primaryIp + " port=5432 dbname=" + dbName,
+                this.readName + " = host=" + String.join(",", readIps) + " port=5432 dbname=" + dbName,
+                "",
+                "[pgbouncer]",
+                "listen_addr = 0.0.0.0",
+                "listen_port = " + PORT,
+                "auth_type = scram-sha-256",
+                "auth_file = /etc/pgbouncer/userlist.txt",
+                "pool_mode = transaction",
+                "default_pool_size = " + settings.getDefaultPoolSize(),
+                "max_client_conn = " + settings.getMaxClientConnections(),
+                "EOF",
+                "chmod 644 /etc/pgbouncer/pgbouncer.ini",
+                "",
+                "docker rm -f pgbouncer || true",
+                "docker run -d --name pgbouncer --restart=always -p " + PORT + ":" + PORT + " \\",
+                "  --env-file /etc/pgbouncer/env -e AUTH_TYPE=scram-sha-256 \\",
+                "  -v /etc/pgbouncer/pgbouncer.ini:/etc/pgbouncer/pgbouncer.ini:ro \\",
+                "  edoburu/pgbouncer:1.18.0",
+                ""
+        );
+    }
+
+    /**
+     * A /28 per region, so the pooler subnets of different regions never overlap.
+     */
+    static String subnetRange(int regionIndex){
+        if (regionIndex < 0 || regionIndex >= 16) {
+            throw new IllegalArgumentException("At most 16 regions are supported, got region index " + regionIndex);
+        }
+        return "10.10.0." + (regionIndex * 16) + "/28";
+    }
+
+    /**
+     * host:port of the internal load balancer in front of PgBouncer.
+     */
+    public String getPoolerHost(){
+        return this.poolerHost;
+    }
+
+    /**
+     * Name of the PgBouncer database entry that serves reads.
+     */
+    public String getReadName(){
+        return this.readName;
+    }
+
+    /**
+     * Routes the API's writes and reads through this pooler.
+     */
+    public DatabaseEndpoint route(DatabaseEndpoint database){
+        return database.routedThrough(this.poolerHost, this.readName);
+    }
+}
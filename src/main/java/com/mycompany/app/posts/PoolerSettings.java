@@ -0,0 +1,71 @@
+package com.mycompany.app.posts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of the PgBouncer instance groups that {@link Pooler} puts between the function and Cloud SQL.
+ *
+ * Every region of the API gets its own group of PgBouncer instances behind an internal load
+ * balancer. zones lists the zone suffixes (e.g. "b", "c") the group may use; when empty,
+ * Compute Engine picks the zones of the region.
+ */
+public class PoolerSettings {
+
+    private final boolean enabled;
+    private final String machineType;
+    private final int defaultPoolSize;
+    private final int maxClientConnections;
+    private final int instances;
+    private final List<String> zones;
+
+    public PoolerSettings(boolean enabled, String machineType, int defaultPoolSize, int maxClientConnections, int instances, List<String> zones){
+        if (instances < 1 || instances > 8) {
+            throw new IllegalArgumentException("Pooler instances must be between 1 and 8, got " + instances);
+        }
+        for (String zone : zones) {
+            if (!zone.matches("[a-z]")) {
+                throw new IllegalArgumentException("Pooler zones are zone suffixes such as \"b\", got \"" + zone + "\"");
+            }
+        }
+        this.enabled = enabled;
+        this.machineType = machineType;
+        this.defaultPoolSize = defaultPoolSize;
+        this.maxClientConnections = maxClientConnections;
+        this.instances = instances;
+        this.zones = Collections.unmodifiableList(new ArrayList<>(zones));
+    }
+
+    public static PoolerSettings disabled(){
+        return new PoolerSettings(false, "e2-small", 20, 1000, 1, List.of());
+    }
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+
+    public String getMachineType(){
+        return this.machineType;
+    }
+
+    /**
+     * Server connections per instance; the database sees up to instances * defaultPoolSize
+     * connections per region.
+     */
+    public int getDefaultPoolSize(){
+        return this.defaultPoolSize;
+    }
+
+    public int getMaxClientConnections(){
+        return this.maxClientConnections;
+    }
+
+    public int getInstances(){
+        return this.instances;
+    }
+
+    public List<String> getZones(){
+        return this.zones;
+    }
+}
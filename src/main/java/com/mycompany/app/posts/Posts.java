@@ -1,6 +1,11 @@
 package com.mycompany.app.posts;
 
+import com.mycompany.app.Environment;
+import com.mycompany.app.observability.Observability;
 import com.mycompany.app.posts.cloudfunctions.CloudFunction;
+import com.mycompany.app.posts.cloudfunctions.FunctionEndpoint;
+import com.mycompany.app.posts.cloudfunctions.PostsConsumer;
+import com.mycompany.app.posts.cloudfunctions.SchemaMigration;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_global_address.GoogleComputeGlobalAddress;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_global_address.GoogleComputeGlobalAddressConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_compute_network.GoogleComputeNetwork;
@@ -9,16 +14,23 @@ import com.hashicorp.cdktf.providers.google_beta.google_service_networking_conne
 import com.hashicorp.cdktf.providers.google_beta.google_service_networking_connection.GoogleServiceNetworkingConnectionConfig;
 import software.constructs.Construct;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class Posts extends Construct {
 
     private String httpsTriggerUrl;
+    private List<FunctionEndpoint> apiEndpoints;
 
-    public Posts(Construct scope, String id, String environment, String user, String project, String dbPass){
+    public Posts(Construct scope, String id, Environment env, String user, String project, String dbPass){
         super(scope, id);
 
+        String environment = env.getEnvironment();
+        List<String> regions = env.getRegions();
+
         GoogleComputeNetwork vpc = new GoogleComputeNetwork(this, "vpc-" + environment, GoogleComputeNetworkConfig.builder()
                 .name("vpc-" + environment)
                 .project(project)
@@ -43,30 +55,64 @@ public class Posts extends Construct {
                 .build()
         );
 
-        Storage storage = new Storage(this, "cloud-sql-" + environment + "-" + user,
-                environment,
-                user,
-                project,
-                privateVpcConnection,
-                vpc.getId(),
-                dbPass
-        );
+        // The first region hosts the primary database and the schema migration
+        Storage storage = new Storage(this, "cloud-sql-" + environment + "-" + user, env, user, project, privateVpcConnection, vpc.getId(), dbPass);
 
-        CloudFunction cloudFunction = new CloudFunction(this, "cloud-function-" + environment + "-" + user,
-                environment,
-                user,
-                project,
-                vpc.getId(),
-                storage.getDbHost(),
-                storage.getDbName(),
-                storage.getDbUserName(),
-                storage.getDbUserPassword()
-        );
+        Map<String, String> serviceVariables = new HashMap<>();
+        // One cache for all regions: secondary regions read it across regions through the VPC, so a
+        // post created anywhere invalidates the cached lists everywhere
+        if (env.getCache().isEnabled()) {
+            Cache cache = new Cache(this, "cache-" + environment + "-" + user, env, user, project, privateVpcConnection, vpc.getId());
+            serviceVariables.put("REDIS_HOST", cache.getCacheHost());
+            serviceVariables.put("CACHE_LIST_TTL_SECONDS", String.valueOf(env.getCache().getListTtlSeconds()));
+            serviceVariables.put("CACHE_DETAIL_TTL_SECONDS", String.valueOf(env.getCache().getDetailTtlSeconds()));
+        }
+
+        WriteQueue writeQueue = null;
+        if (env.getAsyncWrites().isEnabled()) {
+            writeQueue = new WriteQueue(this, "write-queue-" + environment + "-" + user, environment, user, project);
+            serviceVariables.put("POSTS_TOPIC", writeQueue.getTopicId());
+        }
 
-        this.httpsTriggerUrl = cloudFunction.getHttpsTriggerUrl();
+        this.apiEndpoints = new ArrayList<>();
+        for (int i = 0; i < regions.size(); i++) {
+            String functionRegion = regions.get(i);
+            DatabaseEndpoint regionalDatabase = storage.getEndpoint(functionRegion);
+            if (env.getPooler().isEnabled()) {
+                // Every region pools its own connections to the primary and to its local replicas
+                Pooler pooler = new Pooler(this, "pooler-" + (i == 0 ? "" : functionRegion + "-") + environment + "-" + user, env, user, project, functionRegion, vpc.getId(), List.of(CloudFunction.VPC_CONNECTOR_RANGES), storage, dbPass);
+                regionalDatabase = pooler.route(regionalDatabase);
+            }
+            CloudFunction cloudFunction = new CloudFunction(this, "cloud-function-" + (i == 0 ? "" : functionRegion + "-") + environment + "-" + user, env, user, project, functionRegion, i, vpc.getId(), regionalDatabase, serviceVariables);
+
+            if (i == 0) {
+                new SchemaMigration(this, "schema-migration-" + environment + "-" + user, env, user, project, cloudFunction);
+                if (writeQueue != null) {
+                    new PostsConsumer(this, "posts-consumer-" + environment + "-" + user, env, user, project, writeQueue.getSubscriptionId(), cloudFunction);
+                }
+                this.httpsTriggerUrl = cloudFunction.getHttpsTriggerUrl();
+            }
+            this.apiEndpoints.add(cloudFunction.getEndpoint());
+        }
+
+        if (env.getObservability().isEnabled()) {
+            Observability observability = new Observability(this, "observability-" + environment + "-" + user,
+                    environment,
+                    user,
+                    project,
+                    "Posts",
+                    env.getObservability()
+            );
+            observability.watchFunctions(this.apiEndpoints);
+            observability.watchDatabase(storage.getDbInstanceName());
+        }
     }
 
     public String getHttpsTriggerUrl(){
         return this.httpsTriggerUrl;
     }
+
+    public List<FunctionEndpoint> getApiEndpoints(){
+        return this.apiEndpoints;
+    }
 }
@@ -6,36 +6,75 @@ import com.hashicorp.cdktf.providers.google_beta.google_sql_database.GoogleSqlDa
 import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstance;
 import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstanceConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstanceSettings;
+import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstanceSettingsBackupConfiguration;
+import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstanceSettingsDatabaseFlags;
+import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstanceSettingsInsightsConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_sql_database_instance.GoogleSqlDatabaseInstanceSettingsIpConfiguration;
 import com.hashicorp.cdktf.providers.google_beta.google_sql_user.GoogleSqlUser;
 import com.hashicorp.cdktf.providers.google_beta.google_sql_user.GoogleSqlUserConfig;
 import com.hashicorp.cdktf.providers.google_beta.data_google_secret_manager_secret_version.DataGoogleSecretManagerSecretVersion;
 import com.hashicorp.cdktf.providers.google_beta.data_google_secret_manager_secret_version.DataGoogleSecretManagerSecretVersionConfig;
 
+import com.mycompany.app.Environment;
+
 import software.constructs.Construct;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class Storage extends Construct {
 
+    /**
+     * Extensions the API's migrations create; pg_trgm backs the author prefix search.
+     */
+    public static final List<String> EXTENSIONS = List.of("pg_trgm");
+
+    private String dbInstanceName;
+    private String dbPrivateIp;
     private String dbHost;
+    private String dbReadHost;
     private String dbName;
     private String dbUserName;
     private String dbUserPassword;
+    private List<String> readIps;
+    private final Map<String, String> regionalReadIps = new HashMap<>();
 
-    public Storage(Construct scope, String id, String environment, String user, String project, GoogleServiceNetworkingConnection privateVpcConnection, String vpcId, String dbPassword){
+    public Storage(Construct scope, String id, Environment env, String user, String project, GoogleServiceNetworkingConnection privateVpcConnection, String vpcId, String dbPassword){
         super(scope, id);
 
+        String environment = env.getEnvironment();
+        String region = env.getRegion();
+        DatabaseProfile profile = env.getDatabase();
+        List<String> replicaRegions = env.getRegions().subList(1, env.getRegions().size());
+
         GoogleSqlDatabaseInstance dbInstance = new GoogleSqlDatabaseInstance(this, "db-react-application-instance" + environment + "-" + user, GoogleSqlDatabaseInstanceConfig.builder()
                 .name("db-react-application-instance" + environment + "-" + user)
                 .project(project)
-                .region("us-east1")
+                .region(region)
                 .dependsOn(List.of(privateVpcConnection))
                 .settings(GoogleSqlDatabaseInstanceSettings.builder()
-                        .tier("db-f1-micro")
+                        .tier(profile.getTier())
                         .availabilityType("REGIONAL")
+                        .diskType(profile.getDiskType())
+                        .diskSize(profile.getDiskSizeGb())
+                        .diskAutoresize(profile.isDiskAutoresize())
+                        .diskAutoresizeLimit(profile.getDiskAutoresizeLimitGb())
+                        .databaseFlags(databaseFlags(profile))
+                        .insightsConfig(GoogleSqlDatabaseInstanceSettingsInsightsConfig.builder()
+                                .queryInsightsEnabled(profile.isQueryInsights())
+                                .queryStringLength(1024)
+                                .recordApplicationTags(profile.isQueryInsights())
+                                .recordClientAddress(profile.isQueryInsights())
+                                .build()
+                        )
+                        .backupConfiguration(GoogleSqlDatabaseInstanceSettingsBackupConfiguration.builder()
+                                .enabled(profile.isBackups())
+                                .pointInTimeRecoveryEnabled(profile.isBackups())
+                                .build()
+                        )
                         .userLabels(new HashMap<>(){{
                             put("environment", environment);
                         }})
@@ -72,17 +111,119 @@ public class Storage extends Construct {
                 .build()
         );
 
+        List<String> readIps = new ArrayList<>();
+        for (int i = 0; i < profile.getReadReplicas(); i++) {
+            readIps.add(replica("db-react-application-replica-" + i + "-" + environment + "-" + user, environment, project, region, profile, dbInstance, vpcId));
+        }
+
+        // One cross-region replica per secondary region keeps reads local to each regional API
+        for (String replicaRegion : replicaRegions) {
+            this.regionalReadIps.put(replicaRegion, replica("db-react-application-replica-" + replicaRegion + "-" + environment + "-" + user, environment, project, replicaRegion, profile, dbInstance, vpcId));
+        }
+
+        this.dbInstanceName = dbInstance.getName();
+        this.dbPrivateIp = dbInstance.getPrivateIpAddress();
         this.dbHost = dbInstance.getPrivateIpAddress()+":5432";
+        this.readIps = readIps.isEmpty() ? List.of(this.dbPrivateIp) : readIps;
+        this.dbReadHost = hosts(this.readIps);
         this.dbName = db.getName();
         this.dbUserName = dbUser.getName();
         this.dbUserPassword = dbPass.getSecretData();
 
     }
 
+    private String replica(String name, String environment, String project, String region, DatabaseProfile profile, GoogleSqlDatabaseInstance primary, String vpcId){
+        GoogleSqlDatabaseInstance replica = new GoogleSqlDatabaseInstance(this, name, GoogleSqlDatabaseInstanceConfig.builder()
+                .name(name)
+                .project(project)
+                .region(region)
+                .masterInstanceName(primary.getName())
+                .settings(GoogleSqlDatabaseInstanceSettings.builder()
+                        .tier(profile.getTier())
+                        .availabilityType("ZONAL")
+                        .diskType(profile.getDiskType())
+                        .diskAutoresize(profile.isDiskAutoresize())
+                        .diskAutoresizeLimit(profile.getDiskAutoresizeLimitGb())
+                        .databaseFlags(databaseFlags(profile))
+                        .insightsConfig(GoogleSqlDatabaseInstanceSettingsInsightsConfig.builder()
+                                .queryInsightsEnabled(profile.isQueryInsights())
+                                .queryStringLength(1024)
+                                .build()
+                        )
+                        .userLabels(new HashMap<>(){{
+                            put("environment", environment);
+                            put("role", "read-replica");
+                        }})
+                        .ipConfiguration(GoogleSqlDatabaseInstanceSettingsIpConfiguration.builder()
+                                .ipv4Enabled(false)
+                                .privateNetwork(vpcId)
+                                .build()
+                        )
+                        .build()
+                )
+                .databaseVersion("POSTGRES_13")
+                .deletionProtection(false)
+                .build()
+        );
+        return replica.getPrivateIpAddress();
+    }
+
+    private static String hosts(List<String> ips){
+        List<String> hosts = new ArrayList<>();
+        for (String ip : ips) {
+            hosts.add(ip + ":5432");
+        }
+        return String.join(",", hosts);
+    }
+
+    private static List<GoogleSqlDatabaseInstanceSettingsDatabaseFlags> databaseFlags(DatabaseProfile profile){
+        List<GoogleSqlDatabaseInstanceSettingsDatabaseFlags> flags = new ArrayList<>();
+        for (Map.Entry<String, String> flag : profile.getFlags().entrySet()) {
+            flags.add(GoogleSqlDatabaseInstanceSettingsDatabaseFlags.builder()
+                    .name(flag.getKey())
+                    .value(flag.getValue())
+                    .build()
+            );
+        }
+        return flags;
+    }
+
+    public String getDbInstanceName(){
+        return this.dbInstanceName;
+    }
+
+    public String getDbPrivateIp(){
+        return this.dbPrivateIp;
+    }
+
     public String getDbHost(){
         return this.dbHost;
     }
 
+    /**
+     * Comma-separated host:port list of the read replicas, or the primary when there are none.
+     */
+    public String getDbReadHost(){
+        return this.dbReadHost;
+    }
+
+    /**
+     * Read host for an API deployed in the given region: its cross-region replica, or
+     * {@link #getDbReadHost()} in the primary region.
+     */
+    public String getDbReadHost(String region){
+        return hosts(getReadIps(region));
+    }
+
+    /**
+     * Private IPs of the instances that serve reads in the given region: its cross-region replica,
+     * the primary region's replicas, or the primary itself when there are none.
+     */
+    public List<String> getReadIps(String region){
+        String regionalReadIp = this.regionalReadIps.get(region);
+        return regionalReadIp == null ? this.readIps : List.of(regionalReadIp);
+    }
+
     public String getDbName(){
         return this.dbName;
     }
@@ -95,4 +236,12 @@ public class Storage extends Construct {
         return this.dbUserPassword;
     }
 
+    /**
+     * How an API deployed in the given region reaches the database, reading from
+     * {@link #getDbReadHost(String)}.
+     */
+    public DatabaseEndpoint getEndpoint(String region){
+        return new DatabaseEndpoint(this.dbHost, getDbReadHost(region), this.dbName, this.dbName, this.dbUserName, this.dbUserPassword, EXTENSIONS);
+    }
+
 }
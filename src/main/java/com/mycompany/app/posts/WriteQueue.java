@@ -0,0 +1,57 @@
+package com.mycompany.app.posts;
+
+import com.hashicorp.cdktf.providers.google_beta.google_pubsub_subscription.GooglePubsubSubscription;
+import com.hashicorp.cdktf.providers.google_beta.google_pubsub_subscription.GooglePubsubSubscriptionConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_pubsub_subscription.GooglePubsubSubscriptionExpirationPolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_pubsub_topic.GooglePubsubTopic;
+import com.hashicorp.cdktf.providers.google_beta.google_pubsub_topic.GooglePubsubTopicConfig;
+
+import software.constructs.Construct;
+
+import java.util.HashMap;
+
+
+public class WriteQueue extends Construct {
+
+    private String topicId;
+    private String subscriptionId;
+
+    public WriteQueue(Construct scope, String id, String environment, String user, String project){
+        super(scope, id);
+
+        GooglePubsubTopic topic = new GooglePubsubTopic(this, "posts-writes-" + environment + "-" + user, GooglePubsubTopicConfig.builder()
+                .name("posts-writes-" + environment + "-" + user)
+                .project(project)
+                .messageRetentionDuration("86400s")
+                .labels(new HashMap<>(){{
+                    put("environment", environment);
+                }})
+                .build()
+        );
+
+        // Pull subscription, so the consumer can take messages in large batches
+        GooglePubsubSubscription subscription = new GooglePubsubSubscription(this, "posts-writes-consumer-" + environment + "-" + user, GooglePubsubSubscriptionConfig.builder()
+                .name("posts-writes-consumer-" + environment + "-" + user)
+                .project(project)
+                .topic(topic.getId())
+                .ackDeadlineSeconds(60)
+                .messageRetentionDuration("86400s")
+                .expirationPolicy(GooglePubsubSubscriptionExpirationPolicy.builder()
+                        .ttl("")
+                        .build()
+                )
+                .build()
+        );
+
+        this.topicId = topic.getId();
+        this.subscriptionId = subscription.getId();
+    }
+
+    public String getTopicId(){
+        return this.topicId;
+    }
+
+    public String getSubscriptionId(){
+        return this.subscriptionId;
+    }
+}
@@ -1,9 +1,19 @@
 package com.mycompany.app.posts.cloudfunctions;
 
+import com.hashicorp.cdktf.TerraformOutput;
+import com.hashicorp.cdktf.TerraformOutputConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunction;
 import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunctionConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function_iam_member.GoogleCloudfunctionsFunctionIamMember;
 import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function_iam_member.GoogleCloudfunctionsFunctionIamMemberConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions2_function.GoogleCloudfunctions2Function;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions2_function.GoogleCloudfunctions2FunctionBuildConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions2_function.GoogleCloudfunctions2FunctionBuildConfigSource;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions2_function.GoogleCloudfunctions2FunctionBuildConfigSourceStorageSource;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions2_function.GoogleCloudfunctions2FunctionConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions2_function.GoogleCloudfunctions2FunctionServiceConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_run_service_iam_member.GoogleCloudRunServiceIamMember;
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_run_service_iam_member.GoogleCloudRunServiceIamMemberConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket.GoogleStorageBucket;
 import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket.GoogleStorageBucketConfig;
 import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket_object.GoogleStorageBucketObject;
@@ -11,82 +21,243 @@ import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket_object.Go
 import com.hashicorp.cdktf.providers.google_beta.google_vpc_access_connector.GoogleVpcAccessConnector;
 import com.hashicorp.cdktf.providers.google_beta.google_vpc_access_connector.GoogleVpcAccessConnectorConfig;
 
-import org.zeroturnaround.zip.ZipUtil;
+import com.mycompany.app.Environment;
+import com.mycompany.app.ResourceNames;
+import com.mycompany.app.posts.DatabaseEndpoint;
+
 import software.constructs.Construct;
 
-import java.io.File;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Map;
 
 public class CloudFunction extends Construct {
 
+    /**
+     * Covers the connector ranges of all regions, see {@link #connectorRange(int)}.
+     */
+    public static final String VPC_CONNECTOR_RANGES = "10.8.0.0/24";
+
     private String httpsTriggerUrl;
+    private FunctionEndpoint endpoint;
+    private String bucketName;
+    private String archiveObjectName;
+    private String archiveHash;
+    private String vpcConnectorId;
+    private Map<String, String> environmentVariables;
 
-    public CloudFunction(Construct scope, String id, String environment, String user, String project, String vpcId, String dbHost, String dbName, String dbUserName, String dbPassword){
+    /**
+     * @param serviceVariables environment variables of the optional services the API uses, such as
+     *                         the cache or the write queue
+     */
+    public CloudFunction(Construct scope, String id, Environment env, String user, String project, String region, int regionIndex, String vpcId, DatabaseEndpoint database, Map<String, String> serviceVariables){
         super(scope, id);
 
-        GoogleStorageBucket cloudFunctionStorage = new GoogleStorageBucket(this, "cloud-functions-" + environment + "-" + user, GoogleStorageBucketConfig.builder()
-                .name("cloud-functions-" + environment + "-" + user)
+        String environment = env.getEnvironment();
+        FunctionScaling scaling = env.getFunctionScaling();
+        EgressSettings egress = env.getEgress();
+
+        // Bucket names are global, so only the first region keeps the original name
+        String bucketName = "cloud-functions-" + environment + "-" + user + (regionIndex == 0 ? "" : "-" + region);
+
+        GoogleStorageBucket cloudFunctionStorage = new GoogleStorageBucket(this, bucketName, GoogleStorageBucketConfig.builder()
+                .name(bucketName)
                 .project(project)
                 .forceDestroy(true)
-                .location("us-east1")
+                .location(region)
                 .storageClass("STANDARD")
                 .build()
         );
 
-        GoogleVpcAccessConnector vpcAccessConnector = new GoogleVpcAccessConnector(this, "msvmxw-tzag9-a9k2jl45f3s", GoogleVpcAccessConnectorConfig.builder()
-                .name("msvmxw-tzag9-a9k2jl45f3s")
+        GoogleVpcAccessConnector vpcAccessConnector = new GoogleVpcAccessConnector(this, "vpc-connector-" + environment + "-" + user, GoogleVpcAccessConnectorConfig.builder()
+                .name(connectorName(environment, user, region))
                 .project(project)
-                .region("us-east1")
-                .ipCidrRange("10.8.0.0/28")
+                .region(region)
+                .ipCidrRange(connectorRange(regionIndex))
                 .network(vpcId)
+                .machineType(egress.getMachineType())
+                .minInstances(egress.getMinInstances())
+                .maxInstances(egress.getMaxInstances())
                 .build()
         );
 
-        ZipUtil.pack(new File(Paths.get(System.getProperty("user.dir"), "cloudfunctions", "api").toString()), new File(Paths.get(System.getProperty("user.dir"), "func_archive.zip").toString()));
+        new TerraformOutput(this, "egress", TerraformOutputConfig.builder()
+                .description("VPC egress of the API function in " + region)
+                .value(new HashMap<>(){{
+                    put("mode", egress.getMode());
+                    put("connector", vpcAccessConnector.getName());
+                    put("ipCidrRange", connectorRange(regionIndex));
+                    put("machineType", egress.getMachineType());
+                    put("minInstances", egress.getMinInstances());
+                    put("maxInstances", egress.getMaxInstances());
+                    put("egressSettings", egress.getEgressSettings());
+                }})
+                .build()
+        );
+
+        FunctionArchive archive = apiArchive();
 
         GoogleStorageBucketObject funcArchive = new GoogleStorageBucketObject(this, "functions-archive-" + environment + "-" + user, GoogleStorageBucketObjectConfig.builder()
-                .name("functions-archive-" + environment + "-" + user)
+                .name(archive.getFileName())
                 .bucket(cloudFunctionStorage.getName())
-                .source(Paths.get(System.getProperty("user.dir"), "func_archive.zip").toString())
+                .source(archive.getPath())
                 .build()
         );
 
+        Map<String, String> environmentVariables = new HashMap<>(){{
+            put("DB_HOST", database.getHost());
+            put("DB_READ_HOST", database.getReadHost());
+            put("DB_USER", database.getUserName());
+            put("DB_PASS", database.getPassword());
+            put("DB_NAME", database.getName());
+            put("DB_READ_NAME", database.getReadName());
+            put("DB_POOL_MIN", String.valueOf(env.getDbPoolMin()));
+            put("DB_POOL_MAX", String.valueOf(env.getDbPoolMax()));
+            put("DB_EXTENSIONS", String.join(",", database.getExtensions()));
+        }};
+        environmentVariables.putAll(serviceVariables);
+
+        this.endpoint = new FunctionEndpoint(region, "cloud-function-api-" + environment + "-" + user, scaling.isSecondGen());
+
+        if (scaling.isSecondGen()) {
+            this.httpsTriggerUrl = deploySecondGen(environment, user, project, region, scaling, egress, cloudFunctionStorage, funcArchive, vpcAccessConnector, environmentVariables);
+        } else {
+            this.httpsTriggerUrl = deployFirstGen(environment, user, project, region, scaling, egress, cloudFunctionStorage, funcArchive, vpcAccessConnector, environmentVariables);
+        }
+
+        this.bucketName = cloudFunctionStorage.getName();
+        this.archiveObjectName = funcArchive.getName();
+        this.archiveHash = archive.getHash();
+        this.vpcConnectorId = vpcAccessConnector.getId();
+        this.environmentVariables = environmentVariables;
+    }
+
+    private String deployFirstGen(String environment, String user, String project, String region, FunctionScaling scaling, EgressSettings egress, GoogleStorageBucket bucket, GoogleStorageBucketObject archive, GoogleVpcAccessConnector connector, Map<String, String> environmentVariables){
         GoogleCloudfunctionsFunction api = new GoogleCloudfunctionsFunction(this, "cloud-function-api-" + environment + "-" + user, GoogleCloudfunctionsFunctionConfig.builder()
                 .name("cloud-function-api-" + environment + "-" + user)
                 .project(project)
-                .region("us-east1")
-                .runtime("nodejs14")
-                .availableMemoryMb(128)
-                .sourceArchiveBucket(cloudFunctionStorage.getName())
-                .sourceArchiveObject(funcArchive.getName())
+                .region(region)
+                .runtime(scaling.getRuntime())
+                .availableMemoryMb(scaling.getMemoryMb())
+                .minInstances(scaling.getMinInstances())
+                .maxInstances(scaling.getMaxInstances())
+                .sourceArchiveBucket(bucket.getName())
+                .sourceArchiveObject(archive.getName())
                 .triggerHttp(true)
                 .entryPoint("app")
-                .environmentVariables(new HashMap<>(){{
-                    put("DB_HOST", dbHost);
-                    put("DB_USER", dbUserName);
-                    put("DB_PASS", dbPassword);
-                    put("DB_NAME", dbName);
-                }})
-                .vpcConnector(vpcAccessConnector.getId())
+                .environmentVariables(environmentVariables)
+                .vpcConnector(connector.getId())
+                .vpcConnectorEgressSettings(egress.getEgressSettings())
                 .build()
         );
 
         new GoogleCloudfunctionsFunctionIamMember(this, "cloud-function-iam-" + environment + "-" + user, GoogleCloudfunctionsFunctionIamMemberConfig.builder()
                 .cloudFunction(api.getName())
                 .project(project)
-                .region("us-east1")
+                .region(region)
                 .role("roles/cloudfunctions.invoker")
                 .member("allUsers")
                 .build()
         );
 
-        this.httpsTriggerUrl = api.getHttpsTriggerUrl();
+        return api.getHttpsTriggerUrl();
+    }
+
+    private String deploySecondGen(String environment, String user, String project, String region, FunctionScaling scaling, EgressSettings egress, GoogleStorageBucket bucket, GoogleStorageBucketObject archive, GoogleVpcAccessConnector connector, Map<String, String> environmentVariables){
+        GoogleCloudfunctions2FunctionServiceConfig.Builder serviceConfig = GoogleCloudfunctions2FunctionServiceConfig.builder()
+                .availableMemory(scaling.getMemoryMb() + "M")
+                .minInstanceCount(scaling.getMinInstances())
+                .maxInstanceCount(scaling.getMaxInstances())
+                .maxInstanceRequestConcurrency(scaling.getConcurrency())
+                .environmentVariables(environmentVariables)
+                .vpcConnector(connector.getId())
+                .vpcConnectorEgressSettings(egress.getEgressSettings());
+        if (scaling.getCpu() != null) {
+            serviceConfig.availableCpu(scaling.getCpu());
+        }
+
+        GoogleCloudfunctions2Function api = new GoogleCloudfunctions2Function(this, "cloud-function-api-" + environment + "-" + user, GoogleCloudfunctions2FunctionConfig.builder()
+                .name("cloud-function-api-" + environment + "-" + user)
+                .project(project)
+                .location(region)
+                .buildConfig(GoogleCloudfunctions2FunctionBuildConfig.builder()
+                        .runtime(scaling.getRuntime())
+                        .entryPoint("app")
+                        .source(GoogleCloudfunctions2FunctionBuildConfigSource.builder()
+                                .storageSource(GoogleCloudfunctions2FunctionBuildConfigSourceStorageSource.builder()
+                                        .bucket(bucket.getName())
+                                        .object(archive.getName())
+                                        .build()
+                                )
+                                .build()
+                        )
+                        .build()
+                )
+                .serviceConfig(serviceConfig.build())
+                .build()
+        );
+
+        // 2nd gen functions are served by Cloud Run, so public access is granted on the service
+        new GoogleCloudRunServiceIamMember(this, "cloud-function-iam-" + environment + "-" + user, GoogleCloudRunServiceIamMemberConfig.builder()
+                .service(api.getName())
+                .project(project)
+                .location(region)
+                .role("roles/run.invoker")
+                .member("allUsers")
+                .build()
+        );
+
+        return api.getServiceConfig().getUri();
+    }
+
+    /**
+     * The packed sources of cloudfunctions/api, shared by every function of the process.
+     */
+    public static FunctionArchive apiArchive(){
+        return FunctionArchive.of(Paths.get(System.getProperty("user.dir"), "cloudfunctions", "api"), Paths.get(System.getProperty("user.dir")));
+    }
+
+    /**
+     * A /28 per region out of {@link #VPC_CONNECTOR_RANGES}, so connectors in different regions of
+     * the same VPC never overlap.
+     */
+    public static String connectorRange(int regionIndex){
+        if (regionIndex < 0 || regionIndex >= 16) {
+            throw new IllegalArgumentException("At most 16 regions are supported, got region index " + regionIndex);
+        }
+        return "10.8.0." + (regionIndex * 16) + "/28";
+    }
+
+    // Connector names are limited to 25 characters and must be unique per project and region
+    static String connectorName(String environment, String user, String region){
+        return ResourceNames.hashed("vpc-cx-", environment, user, region);
     }
 
     public String getHttpsTriggerUrl(){
         return this.httpsTriggerUrl;
     }
 
+    public FunctionEndpoint getEndpoint(){
+        return this.endpoint;
+    }
+
+    public String getBucketName(){
+        return this.bucketName;
+    }
+
+    public String getArchiveObjectName(){
+        return this.archiveObjectName;
+    }
 
+    public String getArchiveHash(){
+        return this.archiveHash;
+    }
+
+    public String getVpcConnectorId(){
+        return this.vpcConnectorId;
+    }
+
+    public Map<String, String> getEnvironmentVariables(){
+        return this.environmentVariables;
+    }
 }
@@ -0,0 +1,77 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+import java.util.List;
+
+/**
+ * How the API functions reach the VPC, i.e. Cloud SQL, the pooler and the cache.
+ *
+ * The "connector" mode sizes the Serverless VPC Access connector: its machine type bounds the
+ * throughput per connector instance, and min/maxInstances bound how far it scales out.
+ * egressSettings chooses whether only private ranges or all traffic leave through it.
+ */
+public class EgressSettings {
+
+    public static final String CONNECTOR = "connector";
+    public static final String DIRECT = "direct";
+
+    private static final List<String> MACHINE_TYPES = List.of("f1-micro", "e2-micro", "e2-standard-4");
+    private static final List<String> EGRESS = List.of("PRIVATE_RANGES_ONLY", "ALL_TRAFFIC");
+
+    private final String mode;
+    private final String machineType;
+    private final int minInstances;
+    private final int maxInstances;
+    private final String egressSettings;
+
+    public EgressSettings(String mode, String machineType, int minInstances, int maxInstances, String egressSettings){
+        if (DIRECT.equals(mode)) {
+            // google_cloudfunctions2_function has no direct VPC egress in the pinned google-beta provider
+            throw new IllegalArgumentException("Egress mode \"direct\" is not supported by cdktf-provider-google-beta 5.0.0, use \"connector\"");
+        }
+        if (!CONNECTOR.equals(mode)) {
+            throw new IllegalArgumentException("Unknown egress mode \"" + mode + "\", expected \"connector\"");
+        }
+        if (!MACHINE_TYPES.contains(machineType)) {
+            throw new IllegalArgumentException("Unknown connector machine type \"" + machineType + "\", expected one of " + MACHINE_TYPES);
+        }
+        if (minInstances < 2 || maxInstances > 10 || minInstances >= maxInstances) {
+            throw new IllegalArgumentException("Connector instances must satisfy 2 <= min < max <= 10, got " + minInstances + " and " + maxInstances);
+        }
+        if (!EGRESS.contains(egressSettings)) {
+            throw new IllegalArgumentException("Unknown egress settings \"" + egressSettings + "\", expected one of " + EGRESS);
+        }
+        this.mode = mode;
+        this.machineType = machineType;
+        this.minInstances = minInstances;
+        this.maxInstances = maxInstances;
+        this.egressSettings = egressSettings;
+    }
+
+    /**
+     * Same capacity as a connector created without throughput settings: two to three e2-micro
+     * instances, private ranges only.
+     */
+    public static EgressSettings defaults(){
+        return new EgressSettings(CONNECTOR, "e2-micro", 2, 3, "PRIVATE_RANGES_ONLY");
+    }
+
+    public String getMode(){
+        return this.mode;
+    }
+
+    public String getMachineType(){
+        return this.machineType;
+    }
+
+    public int getMinInstances(){
+        return this.minInstances;
+    }
+
+    public int getMaxInstances(){
+        return this.maxInstances;
+    }
+
+    public String getEgressSettings(){
+        return this.egressSettings;
+    }
+}
@@ -0,0 +1,177 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deterministic, content-addressed zip of a function source directory.
+ *
+ * Entries are written in sorted order with a fixed timestamp, so the same sources always produce
+ * the same bytes. The archive is named after the SHA-256 of its contents and an existing archive
+ * with that name is reused instead of being packed again. Packing a new archive deletes the older
+ * ones in the output directory. Dev-only directories are left out of both the hash and the zip.
+ */
+public class FunctionArchive {
+
+    // zip entries store local DOS time, so pin the wall-clock value rather than the instant
+    private static final long FIXED_TIMESTAMP = LocalDateTime.of(1980, 2, 1, 0, 0)
+            .atZone(ZoneId.systemDefault())
+            .toInstant()
+            .toEpochMilli();
+
+    // local stand-ins, their tests and installed dependencies never run in the function
+    private static final List<String> EXCLUDED_DIRS = List.of("local/", "node_modules/", ".git/");
+
+    private static final Map<Path, FunctionArchive> ARCHIVES = new ConcurrentHashMap<>();
+
+    private final String hash;
+    private final Path path;
+
+    private FunctionArchive(String hash, Path path){
+        this.hash = hash;
+        this.path = path;
+    }
+
+    /**
+     * Returns the archive for the given source directory, packing it at most once per process.
+     */
+    public static FunctionArchive of(Path sourceDir, Path outputDir){
+        return ARCHIVES.computeIfAbsent(sourceDir.toAbsolutePath().normalize(), dir -> build(dir, outputDir));
+    }
+
+    private static FunctionArchive build(Path sourceDir, Path outputDir){
+        try {
+            List<Path> files = listFiles(sourceDir);
+            String hash = hash(sourceDir, files);
+            Path archive = outputDir.resolve("func_archive-" + hash + ".zip");
+
+            if (!Files.isRegularFile(archive)) {
+                Files.createDirectories(outputDir);
+                Path tmp = Files.createTempFile(outputDir, "func_archive-", ".zip.tmp");
+                try {
+                    pack(sourceDir, files, tmp);
+                    move(tmp, archive);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                deleteStale(outputDir, archive);
+            }
+
+            return new FunctionArchive(hash, archive);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not package " + sourceDir, e);
+        }
+    }
+
+    private static List<Path> listFiles(Path sourceDir) throws IOException {
+        try (Stream<Path> walk = Files.walk(sourceDir)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(file -> !excluded(entryName(sourceDir, file)))
+                    .sorted((a, b) -> entryName(sourceDir, a).compareTo(entryName(sourceDir, b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean excluded(String entryName){
+        for (String dir : EXCLUDED_DIRS) {
+            if (entryName.startsWith(dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void deleteStale(Path outputDir, Path current) throws IOException {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(outputDir, "func_archive-*.zip")) {
+            for (Path archive : archives) {
+                if (!archive.getFileName().equals(current.getFileName())) {
+                    Files.deleteIfExists(archive);
+                }
+            }
+        }
+    }
+
+    private static String hash(Path sourceDir, List<Path> files) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        for (Path file : files) {
+            digest.update(entryName(sourceDir, file).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            digest.update((byte) 0);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void pack(Path sourceDir, List<Path> files, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Path file : files) {
+                ZipEntry entry = new ZipEntry(entryName(sourceDir, file));
+                entry.setTime(FIXED_TIMESTAMP);
+                zip.putNextEntry(entry);
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String entryName(Path sourceDir, Path file){
+        return sourceDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    public String getHash(){
+        return this.hash;
+    }
+
+    public String getFileName(){
+        return this.path.getFileName().toString();
+    }
+
+    public String getPath(){
+        return this.path.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+/**
+ * Where a deployed API function lives, as needed to put it behind a serverless network endpoint
+ * group. Values are plain strings so other stacks can use them without cross-stack references.
+ */
+public class FunctionEndpoint {
+
+    private final String region;
+    private final String functionName;
+    private final boolean secondGen;
+
+    public FunctionEndpoint(String region, String functionName, boolean secondGen){
+        this.region = region;
+        this.functionName = functionName;
+        this.secondGen = secondGen;
+    }
+
+    public String getRegion(){
+        return this.region;
+    }
+
+    public String getFunctionName(){
+        return this.functionName;
+    }
+
+    public boolean isSecondGen(){
+        return this.secondGen;
+    }
+}
@@ -0,0 +1,73 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+/**
+ * Runtime and scaling settings of the API function.
+ *
+ * Generation 1 deploys a Cloud Functions (1st gen) function that handles one request per instance.
+ * Generation 2 deploys on Cloud Run, which adds per-instance concurrency and an explicit CPU size.
+ */
+public class FunctionScaling {
+
+    private final int generation;
+    private final String runtime;
+    private final int memoryMb;
+    private final String cpu;
+    private final int minInstances;
+    private final int maxInstances;
+    private final int concurrency;
+
+    public FunctionScaling(int generation, String runtime, int memoryMb, String cpu, int minInstances, int maxInstances, int concurrency){
+        if (generation != 1 && generation != 2) {
+            throw new IllegalArgumentException("Function generation must be 1 or 2, got: " + generation);
+        }
+        if (generation == 1 && concurrency > 1) {
+            throw new IllegalArgumentException("Per-instance concurrency requires a 2nd gen function");
+        }
+        if (maxInstances > 0 && minInstances > maxInstances) {
+            throw new IllegalArgumentException("minInstances (" + minInstances + ") must not exceed maxInstances (" + maxInstances + ")");
+        }
+        this.generation = generation;
+        this.runtime = runtime;
+        this.memoryMb = memoryMb;
+        this.cpu = cpu;
+        this.minInstances = minInstances;
+        this.maxInstances = maxInstances;
+        this.concurrency = concurrency;
+    }
+
+    public static FunctionScaling defaults(){
+        return new FunctionScaling(1, "nodejs18", 128, null, 0, 10, 1);
+    }
+
+    public boolean isSecondGen(){
+        return this.generation == 2;
+    }
+
+    public int getGeneration(){
+        return this.generation;
+    }
+
+    public String getRuntime(){
+        return this.runtime;
+    }
+
+    public int getMemoryMb(){
+        return this.memoryMb;
+    }
+
+    public String getCpu(){
+        return this.cpu;
+    }
+
+    public int getMinInstances(){
+        return this.minInstances;
+    }
+
+    public int getMaxInstances(){
+        return this.maxInstances;
+    }
+
+    public int getConcurrency(){
+        return this.concurrency;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_scheduler_job.GoogleCloudSchedulerJob;
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_scheduler_job.GoogleCloudSchedulerJobConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_scheduler_job.GoogleCloudSchedulerJobHttpTarget;
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_scheduler_job.GoogleCloudSchedulerJobHttpTargetOidcToken;
+import com.hashicorp.cdktf.providers.google_beta.google_cloud_scheduler_job.GoogleCloudSchedulerJobRetryConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunction;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunctionConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function_iam_member.GoogleCloudfunctionsFunctionIamMember;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function_iam_member.GoogleCloudfunctionsFunctionIamMemberConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_service_account.GoogleServiceAccount;
+import com.hashicorp.cdktf.providers.google_beta.google_service_account.GoogleServiceAccountConfig;
+import com.mycompany.app.Environment;
+import com.mycompany.app.ResourceNames;
+import com.mycompany.app.posts.AsyncWriteSettings;
+
+import software.constructs.Construct;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Private function that drains the posts subscription and inserts the queued posts in
+ * multi-row batches, invoked by Cloud Scheduler.
+ *
+ * Like {@link SchemaMigration} it reuses the bucket, archive and VPC connector of an API
+ * {@link CloudFunction}. Each run keeps pulling until the subscription is empty or the run is
+ * close to its timeout, so posts are written within about a minute even under sustained load.
+ */
+public class PostsConsumer extends Construct {
+
+    private static final int TIMEOUT_SECONDS = 540;
+
+    public PostsConsumer(Construct scope, String id, Environment env, String user, String project, String subscriptionId, CloudFunction api){
+        super(scope, id);
+
+        String environment = env.getEnvironment();
+        String region = api.getEndpoint().getRegion();
+        FunctionScaling scaling = env.getFunctionScaling();
+        AsyncWriteSettings settings = env.getAsyncWrites();
+
+        Map<String, String> environmentVariables = new HashMap<>(api.getEnvironmentVariables());
+        environmentVariables.remove("POSTS_TOPIC");
+        environmentVariables.put("POSTS_SUBSCRIPTION", subscriptionId);
+        environmentVariables.put("CONSUMER_BATCH_SIZE", String.valueOf(settings.getBatchSize()));
+        environmentVariables.put("CONSUMER_RUN_SECONDS", String.valueOf(TIMEOUT_SECONDS - 60));
+        // One connection is enough for one batch insert at a time
+        environmentVariables.put("DB_POOL_MIN", "0");
+        environmentVariables.put("DB_POOL_MAX", "1");
+
+        GoogleCloudfunctionsFunction consumer = new GoogleCloudfunctionsFunction(this, "cloud-function-consumer-" + environment + "-" + user, GoogleCloudfunctionsFunctionConfig.builder()
+                .name("cloud-function-consumer-" + environment + "-" + user)
+                .project(project)
+                .region(region)
+                .runtime(scaling.getRuntime())
+                .availableMemoryMb(256)
+                .timeout(TIMEOUT_SECONDS)
+                .maxInstances(1)
+                .sourceArchiveBucket(api.getBucketName())
+                .sourceArchiveObject(api.getArchiveObjectName())
+                .triggerHttp(true)
+                .entryPoint("consume")
+                .environmentVariables(environmentVariables)
+                .vpcConnector(api.getVpcConnectorId())
+                .build()
+        );
+
+        GoogleServiceAccount invoker = new GoogleServiceAccount(this, "posts-consumer-invoker-" + environment + "-" + user, GoogleServiceAccountConfig.builder()
+                .accountId(ResourceNames.hashed("consumer-", environment, user, region))
+                .project(project)
+                .displayName("Invokes the posts consumer of " + environment + "-" + user)
+                .build()
+        );
+
+        new GoogleCloudfunctionsFunctionIamMember(this, "cloud-function-consumer-iam-" + environment + "-" + user, GoogleCloudfunctionsFunctionIamMemberConfig.builder()
+                .cloudFunction(consumer.getName())
+                .project(project)
+                .region(region)
+                .role("roles/cloudfunctions.invoker")
+                .member("serviceAccount:" + invoker.getEmail())
+                .build()
+        );
+
+        new GoogleCloudSchedulerJob(this, "posts-consumer-schedule-" + environment + "-" + user, GoogleCloudSchedulerJobConfig.builder()
+                .name("posts-consumer-schedule-" + environment + "-" + user)
+                .project(project)
+                .region(region)
+                .schedule(settings.getSchedule())
+                .attemptDeadline(TIMEOUT_SECONDS + "s")
+                .retryConfig(GoogleCloudSchedulerJobRetryConfig.builder()
+                        .retryCount(0)
+                        .build()
+                )
+                .httpTarget(GoogleCloudSchedulerJobHttpTarget.builder()
+                        .uri(consumer.getHttpsTriggerUrl())
+                        .httpMethod("POST")
+                        .oidcToken(GoogleCloudSchedulerJobHttpTargetOidcToken.builder()
+                                .serviceAccountEmail(invoker.getEmail())
+                                .build()
+                        )
+                        .build()
+                )
+                .build()
+        );
+    }
+}
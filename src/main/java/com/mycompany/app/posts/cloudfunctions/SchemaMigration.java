@@ -0,0 +1,80 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunction;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunctionConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunctionEventTrigger;
+import com.hashicorp.cdktf.providers.google_beta.google_cloudfunctions_function.GoogleCloudfunctionsFunctionEventTriggerFailurePolicy;
+import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket.GoogleStorageBucket;
+import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket.GoogleStorageBucketConfig;
+import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket_object.GoogleStorageBucketObject;
+import com.hashicorp.cdktf.providers.google_beta.google_storage_bucket_object.GoogleStorageBucketObjectConfig;
+import com.mycompany.app.Environment;
+
+import software.constructs.Construct;
+
+import java.util.List;
+
+/**
+ * Private function that runs the knex migrations, once per deployed archive.
+ *
+ * It reuses the bucket, archive and VPC connector of an API {@link CloudFunction}, so with several
+ * regions the schema is migrated exactly once, from the primary region. The function is triggered
+ * by a marker object named after the archive hash, which Terraform writes after the function has
+ * been updated. Deploying therefore needs neither gcloud nor network access to the function, and
+ * works the same from a workstation and from Terraform Cloud.
+ */
+public class SchemaMigration extends Construct {
+
+    public SchemaMigration(Construct scope, String id, Environment env, String user, String project, CloudFunction api){
+        super(scope, id);
+
+        String environment = env.getEnvironment();
+        String region = api.getEndpoint().getRegion();
+        FunctionScaling scaling = env.getFunctionScaling();
+
+        GoogleStorageBucket markers = new GoogleStorageBucket(this, "schema-migrations-" + environment + "-" + user, GoogleStorageBucketConfig.builder()
+                .name("schema-migrations-" + environment + "-" + user)
+                .project(project)
+                .forceDestroy(true)
+                .location(region)
+                .storageClass("STANDARD")
+                .uniformBucketLevelAccess(true)
+                .build()
+        );
+
+        // Failed runs are retried; the function gives up on events older than a few minutes
+        GoogleCloudfunctionsFunction migrate = new GoogleCloudfunctionsFunction(this, "cloud-function-migrate-" + environment + "-" + user, GoogleCloudfunctionsFunctionConfig.builder()
+                .name("cloud-function-migrate-" + environment + "-" + user)
+                .project(project)
+                .region(region)
+                .runtime(scaling.getRuntime())
+                .availableMemoryMb(256)
+                .timeout(300)
+                .maxInstances(1)
+                .sourceArchiveBucket(api.getBucketName())
+                .sourceArchiveObject(api.getArchiveObjectName())
+                .eventTrigger(GoogleCloudfunctionsFunctionEventTrigger.builder()
+                        .eventType("google.storage.object.finalize")
+                        .resource(markers.getName())
+                        .failurePolicy(GoogleCloudfunctionsFunctionEventTriggerFailurePolicy.builder()
+                                .retry(true)
+                                .build()
+                        )
+                        .build()
+                )
+                .entryPoint("migrate")
+                .environmentVariables(api.getEnvironmentVariables())
+                .vpcConnector(api.getVpcConnectorId())
+                .build()
+        );
+
+        // A new archive renames the marker, which runs the migrations with the updated function
+        new GoogleStorageBucketObject(this, "schema-migration-" + environment + "-" + user, GoogleStorageBucketObjectConfig.builder()
+                .name("migrations/" + api.getArchiveHash())
+                .bucket(markers.getName())
+                .content(api.getArchiveHash())
+                .dependsOn(List.of(migrate))
+                .build()
+        );
+    }
+}
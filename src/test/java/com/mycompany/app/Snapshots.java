@@ -0,0 +1,67 @@
+package com.mycompany.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Compares synthesized stacks with the JSON files in src/test/resources/__snapshots__.
+ *
+ * A missing or different snapshot fails the test. Run with -Dsnapshot.update=true to record the
+ * snapshots after an intended change, and review the diff before committing them. The checkout
+ * directory and the content hash of the function archive are replaced with placeholders, so the
+ * snapshots do not change with the machine or with the API's sources.
+ */
+public final class Snapshots {
+
+    private static final Path DIRECTORY = Paths.get(System.getProperty("user.dir"), "src", "test", "resources", "__snapshots__");
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private Snapshots(){
+    }
+
+    public static void assertMatches(String name, Synthesized synthesized){
+        String actual = normalize(synthesized.getJson());
+        Path snapshot = DIRECTORY.resolve(name + ".json");
+        try {
+            if (Boolean.getBoolean("snapshot.update")) {
+                Files.createDirectories(DIRECTORY);
+                Files.write(snapshot, actual.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (!Files.exists(snapshot)) {
+                fail("No snapshot " + name + " in " + DIRECTORY + "; record it with -Dsnapshot.update=true");
+            }
+            String expected = new String(Files.readAllBytes(snapshot), StandardCharsets.UTF_8);
+            assertEquals(expected.replace("\r\n", "\n"), actual, "Synthesized JSON differs from snapshot " + name + "; rerun with -Dsnapshot.update=true if the change is intended");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String normalize(String json){
+        String normalized = json.replace(System.getProperty("user.dir"), "<basedir>");
+        normalized = CONTENT_HASH.matcher(normalized).replaceAll(Matcher.quoteReplacement("<hash>"));
+        try {
+            Object tree = MAPPER.readValue(normalized, Object.class);
+            return MAPPER.writeValueAsString(tree).replace("\r\n", "\n") + "\n";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
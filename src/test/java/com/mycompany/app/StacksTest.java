@@ -0,0 +1,51 @@
+package com.mycompany.app;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.App;
+import com.hashicorp.cdktf.Testing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The posts and frontend stacks of one environment, synthesized together the way Main does.
+ */
+class StacksTest {
+
+    private static final String USER = "tester";
+    private static final String PROJECT = "test-project";
+
+    private static final Environment ENVIRONMENT = Environment.builder("test").build();
+
+    private static Main.FrontendStack frontendStack(App app, Main.PostsStack posts){
+        Main.FrontendStack frontend = new Main.FrontendStack(app, "frontend-test", ENVIRONMENT, USER, PROJECT, posts.getApiEndpoints());
+        frontend.addDependency(posts);
+        return frontend;
+    }
+
+    @Test
+    void postsStackMatchesSnapshot(){
+        App app = Testing.app();
+        Main.PostsStack posts = new Main.PostsStack(app, "posts-test", ENVIRONMENT, USER, PROJECT);
+        frontendStack(app, posts);
+        Synthesized synth = Synthesized.full(posts);
+
+        Snapshots.assertMatches("PostsStack", synth);
+        JsonNode dbPass = synth.getRoot().path("variable").path("DB_PASS");
+        assertTrue(dbPass.path("sensitive").asBoolean());
+        assertEquals(PROJECT, Synthesized.block(synth.getRoot().path("provider"), "google-beta").path("project").asText());
+    }
+
+    @Test
+    void frontendStackMatchesSnapshot(){
+        App app = Testing.app();
+        Main.FrontendStack frontend = frontendStack(app, new Main.PostsStack(app, "posts-test", ENVIRONMENT, USER, PROJECT));
+        Synthesized synth = Synthesized.full(frontend);
+
+        Snapshots.assertMatches("FrontendStack", synth);
+        assertTrue(synth.getRoot().path("provider").has("local"));
+        assertEquals("PREMIUM", synth.resource("google_compute_project_default_network_tier").path("network_tier").asText());
+    }
+}
@@ -0,0 +1,115 @@
+package com.mycompany.app;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hashicorp.cdktf.TerraformStack;
+import com.hashicorp.cdktf.Testing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Terraform JSON of a synthesized stack, with lookups by resource type and name.
+ */
+public final class Synthesized {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String json;
+    private final JsonNode root;
+
+    private Synthesized(String json){
+        this.json = json;
+        try {
+            this.root = MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The stack alone, as Testing.synth renders it.
+     */
+    public static Synthesized of(TerraformStack stack){
+        return new Synthesized(Testing.synth(stack));
+    }
+
+    /**
+     * The stack's cdk.tf.json after synthesizing its whole app, as `cdktf synth` writes it.
+     */
+    public static Synthesized full(TerraformStack stack){
+        String outdir = Testing.fullSynth(stack);
+        try {
+            return new Synthesized(new String(Files.readAllBytes(Paths.get(outdir, "stacks", stack.getNode().getId(), "cdk.tf.json")), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * JSON of a single attribute value, e.g. the dashboard_json of a dashboard.
+     */
+    public static JsonNode parse(String json){
+        try {
+            return MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A nested block, whether it was synthesized as an object or as a list of one.
+     */
+    public static JsonNode block(JsonNode node, String field){
+        JsonNode block = node.get(field);
+        assertNotNull(block, "missing block " + field);
+        return block.isArray() ? block.get(0) : block;
+    }
+
+    public String getJson(){
+        return this.json;
+    }
+
+    public JsonNode getRoot(){
+        return this.root;
+    }
+
+    public List<JsonNode> resources(String type){
+        List<JsonNode> resources = new ArrayList<>();
+        JsonNode ofType = this.root.path("resource").path(type);
+        for (Iterator<JsonNode> it = ofType.elements(); it.hasNext(); ) {
+            resources.add(it.next());
+        }
+        return resources;
+    }
+
+    /**
+     * The only resource of the given type.
+     */
+    public JsonNode resource(String type){
+        List<JsonNode> resources = resources(type);
+        assertEquals(1, resources.size(), "resources of type " + type);
+        return resources.get(0);
+    }
+
+    /**
+     * The resource of the given type whose name attribute is the given name.
+     */
+    public JsonNode resource(String type, String name){
+        for (JsonNode resource : resources(type)) {
+            if (name.equals(resource.path("name").asText())) {
+                return resource;
+            }
+        }
+        throw new AssertionError("No " + type + " named " + name);
+    }
+}
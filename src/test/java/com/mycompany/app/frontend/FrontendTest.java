@@ -0,0 +1,62 @@
+package com.mycompany.app.frontend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.TerraformStack;
+import com.hashicorp.cdktf.Testing;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+import com.mycompany.app.posts.cloudfunctions.FunctionEndpoint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontendTest {
+
+    private static final String USER = "tester";
+    private static final String PROJECT = "test-project";
+
+    private static final List<FunctionEndpoint> API_ENDPOINTS = List.of(
+            new FunctionEndpoint("us-east1", "cloud-function-api-test-" + USER, false),
+            new FunctionEndpoint("europe-west1", "cloud-function-api-test-" + USER, false)
+    );
+
+    private static Synthesized synth(){
+        TerraformStack stack = new TerraformStack(Testing.app(), "test");
+        new Frontend(stack, "frontend", Environment.builder("test").build(), USER, PROJECT, API_ENDPOINTS);
+        return Synthesized.of(stack);
+    }
+
+    @Test
+    void matchesSnapshot(){
+        Snapshots.assertMatches("Frontend", synth());
+    }
+
+    @Test
+    void servesTheApiFromEveryRegion(){
+        Synthesized synth = synth();
+
+        assertEquals(2, synth.resources("google_compute_region_network_endpoint_group").size());
+        JsonNode api = synth.resource("google_compute_backend_service");
+        assertEquals(2, api.path("backend").size());
+
+        JsonNode cacheKey = Synthesized.block(Synthesized.block(api, "cdn_policy"), "cache_key_policy");
+        List<String> whitelist = List.of("limit", "cursor", "q", "author");
+        for (String parameter : whitelist) {
+            assertTrue(cacheKey.path("query_string_whitelist").toString().contains("\"" + parameter + "\""), parameter);
+        }
+    }
+
+    @Test
+    void letsBrowsersCacheStaticAssetsForAYear(){
+        JsonNode cdnPolicy = Synthesized.block(synth().resource("google_compute_backend_bucket"), "cdn_policy");
+
+        assertEquals("CACHE_ALL_STATIC", cdnPolicy.path("cache_mode").asText());
+        assertEquals(31536000, cdnPolicy.path("client_ttl").asInt());
+        assertEquals(31536000, cdnPolicy.path("max_ttl").asInt());
+    }
+}
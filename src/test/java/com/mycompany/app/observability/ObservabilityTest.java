@@ -0,0 +1,160 @@
+package com.mycompany.app.observability;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.TerraformStack;
+import com.hashicorp.cdktf.Testing;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+import com.mycompany.app.posts.cloudfunctions.FunctionEndpoint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObservabilityTest {
+
+    private static final String USER = "tester";
+    private static final String PROJECT = "test-project";
+
+    private static final String FUNCTION = "cloud-function-api-test-" + USER;
+    private static final String INSTANCE = "db-react-application-instancetest-" + USER;
+
+    static Synthesized synth(boolean secondGen, ObservabilitySettings settings){
+        TerraformStack stack = new TerraformStack(Testing.app(), "test");
+        Observability observability = new Observability(stack, "observability", "test", USER, PROJECT, "Posts", settings);
+        observability.watchFunctions(List.of(
+                new FunctionEndpoint("us-east1", FUNCTION, secondGen),
+                new FunctionEndpoint("europe-west1", FUNCTION, secondGen)
+        ));
+        observability.watchDatabase(INSTANCE);
+        observability.watchLoadBalancer("web-url-map-httpstest-" + USER);
+        return Synthesized.of(stack);
+    }
+
+    @Test
+    void matchesFirstGenSnapshot(){
+        Snapshots.assertMatches("Observability.gen1", synth(false, new ObservabilitySettings(true, 1000, 250, 80, 80, List.of("oncall@example.com"))));
+    }
+
+    @Test
+    void matchesSecondGenSnapshot(){
+        Snapshots.assertMatches("Observability.gen2", synth(true, ObservabilitySettings.defaults()));
+    }
+
+    private static JsonNode threshold(Synthesized synth, String displayName){
+        for (JsonNode policy : synth.resources("google_monitoring_alert_policy")) {
+            if (policy.path("display_name").asText().equals(displayName + " (test-" + USER + ")")) {
+                return Synthesized.block(policy.path("conditions").get(0), "condition_threshold");
+            }
+        }
+        throw new AssertionError("No alert policy " + displayName);
+    }
+
+    private static List<String> widgetTitles(JsonNode dashboard){
+        List<String> titles = new ArrayList<>();
+        for (JsonNode widget : dashboard.path("gridLayout").path("widgets")) {
+            titles.add(widget.path("title").asText());
+        }
+        return titles;
+    }
+
+    @Test
+    void dashboardIsValidJsonWithAChartPerSignal(){
+        JsonNode dashboard = Synthesized.parse(synth(false, ObservabilitySettings.defaults()).resource("google_monitoring_dashboard").path("dashboard_json").asText());
+
+        assertEquals("Posts test-" + USER, dashboard.path("displayName").asText());
+        assertEquals(List.of(
+                "API latency p95 by region",
+                "API instances by region",
+                "Knex pool acquire time p95",
+                "Cloud SQL CPU utilization",
+                "Cloud SQL connections",
+                "CDN hit ratio",
+                "Load balancer latency p95"
+        ), widgetTitles(dashboard));
+
+        JsonNode latency = dashboard.path("gridLayout").path("widgets").get(0).path("xyChart").path("dataSets").get(0).path("timeSeriesQuery").path("timeSeriesFilter");
+        assertEquals("metric.type=\"cloudfunctions.googleapis.com/function/execution_times\" resource.type=\"cloud_function\" resource.label.function_name=\"" + FUNCTION + "\"", latency.path("filter").asText());
+        assertEquals("ALIGN_PERCENTILE_95", latency.path("aggregation").path("perSeriesAligner").asText());
+        assertEquals("resource.label.region", latency.path("aggregation").path("groupByFields").get(0).asText());
+
+        JsonNode hitRatio = dashboard.path("gridLayout").path("widgets").get(5).path("xyChart").path("dataSets").get(0).path("timeSeriesQuery").path("timeSeriesFilterRatio");
+        assertTrue(hitRatio.path("numerator").path("filter").asText().endsWith(" metric.label.cache_result=\"HIT\""));
+    }
+
+    @Test
+    void poolAcquireMetricReadsTheApiLogs(){
+        JsonNode gen1 = synth(false, ObservabilitySettings.defaults()).resource("google_logging_metric");
+        assertEquals("resource.type=\"cloud_function\" resource.labels.function_name=\"" + FUNCTION + "\" jsonPayload.poolAcquireMs>=0", gen1.path("filter").asText());
+        assertEquals("EXTRACT(jsonPayload.poolAcquireMs)", gen1.path("value_extractor").asText());
+        assertEquals("EXTRACT(jsonPayload.pool)", gen1.path("label_extractors").path("pool").asText());
+        assertEquals("DISTRIBUTION", Synthesized.block(gen1, "metric_descriptor").path("value_type").asText());
+
+        JsonNode gen2 = synth(true, ObservabilitySettings.defaults()).resource("google_logging_metric");
+        assertEquals("resource.type=\"cloud_run_revision\" resource.labels.service_name=\"" + FUNCTION + "\" jsonPayload.poolAcquireMs>=0", gen2.path("filter").asText());
+    }
+
+    @Test
+    void firstGenLatencyThresholdIsInNanoseconds(){
+        ObservabilitySettings settings = new ObservabilitySettings(true, 750, 250, 80, 80, List.of());
+        JsonNode latency = threshold(synth(false, settings), "API latency p95 above 750 ms");
+
+        assertEquals(750 * 1_000_000.0, latency.path("threshold_value").asDouble());
+        assertTrue(latency.path("filter").asText().startsWith("metric.type=\"cloudfunctions.googleapis.com/function/execution_times\" "));
+    }
+
+    @Test
+    void secondGenLatencyThresholdIsInMilliseconds(){
+        ObservabilitySettings settings = new ObservabilitySettings(true, 750, 250, 80, 80, List.of());
+        JsonNode latency = threshold(synth(true, settings), "API latency p95 above 750 ms");
+
+        assertEquals(750.0, latency.path("threshold_value").asDouble());
+        assertTrue(latency.path("filter").asText().startsWith("metric.type=\"run.googleapis.com/request_latencies\" resource.type=\"cloud_run_revision\" "));
+    }
+
+    @Test
+    void alertsUseTheConfiguredThresholds(){
+        ObservabilitySettings settings = new ObservabilitySettings(true, 1500, 300, 70, 150, List.of());
+        Synthesized synth = synth(false, settings);
+
+        assertEquals(5, synth.resources("google_monitoring_alert_policy").size());
+
+        JsonNode poolAcquire = threshold(synth, "Knex pool acquire p95 above 300 ms");
+        assertEquals(300.0, poolAcquire.path("threshold_value").asDouble());
+        assertTrue(poolAcquire.path("filter").asText().startsWith("metric.type=\"logging.googleapis.com/user/${google_logging_metric."));
+        assertTrue(poolAcquire.path("filter").asText().endsWith("\" resource.type=\"cloud_function\""));
+
+        JsonNode cpu = threshold(synth, "Cloud SQL CPU above 70%");
+        assertEquals(0.7, cpu.path("threshold_value").asDouble(), 1e-9);
+        assertEquals("metric.type=\"cloudsql.googleapis.com/database/cpu/utilization\" resource.type=\"cloudsql_database\" resource.label.database_id=\"" + PROJECT + ":" + INSTANCE + "\"", cpu.path("filter").asText());
+
+        JsonNode connections = threshold(synth, "Cloud SQL connections above 150");
+        assertEquals(150.0, connections.path("threshold_value").asDouble());
+        assertEquals("REDUCE_SUM", Synthesized.block(connections, "aggregations").path("cross_series_reducer").asText());
+
+        JsonNode lbLatency = threshold(synth, "Load balancer latency p95 above 1500 ms");
+        assertEquals(1500.0, lbLatency.path("threshold_value").asDouble());
+        assertEquals("COMPARISON_GT", lbLatency.path("comparison").asText());
+        assertEquals("300s", lbLatency.path("duration").asText());
+    }
+
+    @Test
+    void alertsNotifyEveryConfiguredEmail(){
+        ObservabilitySettings settings = new ObservabilitySettings(true, 1000, 250, 80, 80, List.of("oncall@example.com", "team@example.com"));
+        Synthesized synth = synth(false, settings);
+
+        assertEquals(2, synth.resources("google_monitoring_notification_channel").size());
+        for (JsonNode policy : synth.resources("google_monitoring_alert_policy")) {
+            assertEquals(2, policy.path("notification_channels").size());
+        }
+    }
+
+    @Test
+    void quoteEscapesJsonStrings(){
+        assertEquals("\"a \\\"b\\\" \\\\ c\"", Observability.quote("a \"b\" \\ c"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.mycompany.app.posts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.TerraformStack;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+
+import org.junit.jupiter.api.Test;
+
+import static com.mycompany.app.posts.PostsFixtures.PROJECT;
+import static com.mycompany.app.posts.PostsFixtures.USER;
+import static com.mycompany.app.posts.PostsFixtures.VPC_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheTest {
+
+    private static Synthesized synth(){
+        TerraformStack stack = PostsFixtures.stack();
+        Environment env = Environment.builder("test")
+                .cache(new CacheSettings(true, "STANDARD_HA", 2, 10, 300))
+                .build();
+        new Cache(stack, "cache", env, USER, PROJECT, PostsFixtures.privateVpcConnection(stack), VPC_ID);
+        return Synthesized.of(stack);
+    }
+
+    @Test
+    void matchesSnapshot(){
+        Snapshots.assertMatches("Cache", synth());
+    }
+
+    @Test
+    void usesPrivateServiceAccessInThePrimaryRegion(){
+        JsonNode redis = synth().resource("google_redis_instance");
+
+        assertEquals("posts-cache-test-" + USER, redis.path("name").asText());
+        assertEquals("us-east1", redis.path("region").asText());
+        assertEquals("STANDARD_HA", redis.path("tier").asText());
+        assertEquals(2, redis.path("memory_size_gb").asInt());
+        assertEquals("PRIVATE_SERVICE_ACCESS", redis.path("connect_mode").asText());
+        assertEquals(VPC_ID, redis.path("authorized_network").asText());
+        assertEquals("allkeys-lru", redis.path("redis_configs").path("maxmemory-policy").asText());
+    }
+}
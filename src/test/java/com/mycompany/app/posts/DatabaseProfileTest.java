@@ -0,0 +1,124 @@
+package com.mycompany.app.posts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Synthesized;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.mycompany.app.posts.PostsFixtures.USER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every preset reaches the synthesized Cloud SQL instances as configured.
+ */
+class DatabaseProfileTest {
+
+    private static final String PRIMARY = "db-react-application-instancetest-" + USER;
+
+    private static Synthesized synth(DatabaseProfile profile){
+        return PostsFixtures.storage(Environment.builder("test")
+                .database(profile)
+                .build()
+        );
+    }
+
+    private static Map<String, String> flags(JsonNode settings){
+        Map<String, String> flags = new LinkedHashMap<>();
+        for (JsonNode flag : settings.path("database_flags")) {
+            flags.put(flag.path("name").asText(), flag.path("value").asText());
+        }
+        return flags;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"micro", "small", "medium", "large"})
+    void presetReachesThePrimaryInstance(String name){
+        DatabaseProfile profile = DatabaseProfile.named(name);
+        JsonNode settings = Synthesized.block(synth(profile).resource("google_sql_database_instance", PRIMARY), "settings");
+
+        assertEquals(profile.getTier(), settings.path("tier").asText());
+        assertEquals(profile.getDiskType(), settings.path("disk_type").asText());
+        assertEquals(profile.getDiskSizeGb(), settings.path("disk_size").asInt());
+        assertEquals(profile.isDiskAutoresize(), settings.path("disk_autoresize").asBoolean());
+        assertEquals(profile.getDiskAutoresizeLimitGb(), settings.path("disk_autoresize_limit").asInt());
+        assertEquals(profile.getFlags(), flags(settings));
+
+        JsonNode insights = Synthesized.block(settings, "insights_config");
+        assertEquals(profile.isQueryInsights(), insights.path("query_insights_enabled").asBoolean());
+        assertEquals(1024, insights.path("query_string_length").asInt());
+
+        JsonNode backups = Synthesized.block(settings, "backup_configuration");
+        assertEquals(profile.isBackups(), backups.path("enabled").asBoolean());
+        assertEquals(profile.isBackups(), backups.path("point_in_time_recovery_enabled").asBoolean());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"micro", "small", "medium", "large"})
+    void presetCreatesItsReadReplicas(String name){
+        DatabaseProfile profile = DatabaseProfile.named(name);
+        Synthesized synth = synth(profile);
+
+        assertEquals(1 + profile.getReadReplicas(), synth.resources("google_sql_database_instance").size());
+        for (int i = 0; i < profile.getReadReplicas(); i++) {
+            JsonNode replica = synth.resource("google_sql_database_instance", "db-react-application-replica-" + i + "-test-" + USER);
+            JsonNode settings = Synthesized.block(replica, "settings");
+            assertEquals(profile.getTier(), settings.path("tier").asText());
+            assertEquals(profile.getFlags(), flags(settings));
+            assertEquals("ZONAL", settings.path("availability_type").asText());
+        }
+    }
+
+    @Test
+    void presetsGrowFromMicroToLarge(){
+        List<DatabaseProfile> presets = List.of(DatabaseProfile.micro(), DatabaseProfile.small(), DatabaseProfile.medium(), DatabaseProfile.large());
+        for (int i = 1; i < presets.size(); i++) {
+            assertTrue(presets.get(i).getDiskSizeGb() > presets.get(i - 1).getDiskSizeGb());
+            assertTrue(presets.get(i).getReadReplicas() >= presets.get(i - 1).getReadReplicas());
+        }
+        assertEquals("db-f1-micro", DatabaseProfile.micro().getTier());
+        assertEquals(Map.of(), DatabaseProfile.micro().getFlags());
+    }
+
+    @Test
+    void withTierChangesOnlyTheTier(){
+        DatabaseProfile profile = DatabaseProfile.medium().withTier("db-custom-4-15360");
+        Synthesized synth = synth(profile);
+
+        for (JsonNode instance : synth.resources("google_sql_database_instance")) {
+            assertEquals("db-custom-4-15360", Synthesized.block(instance, "settings").path("tier").asText());
+        }
+        JsonNode settings = Synthesized.block(synth.resource("google_sql_database_instance", PRIMARY), "settings");
+        assertEquals(DatabaseProfile.medium().getDiskSizeGb(), settings.path("disk_size").asInt());
+        assertEquals(DatabaseProfile.medium().getFlags(), flags(settings));
+        assertEquals(2, synth.resources("google_sql_database_instance").size());
+    }
+
+    @Test
+    void withReadReplicasChangesOnlyTheReplicaCount(){
+        DatabaseProfile profile = DatabaseProfile.small().withReadReplicas(3);
+        Synthesized synth = synth(profile);
+
+        assertEquals(4, synth.resources("google_sql_database_instance").size());
+        for (int i = 0; i < 3; i++) {
+            JsonNode replica = synth.resource("google_sql_database_instance", "db-react-application-replica-" + i + "-test-" + USER);
+            assertEquals("us-east1", replica.path("region").asText());
+            assertTrue(replica.path("master_instance_name").asText().startsWith("${google_sql_database_instance."));
+            assertEquals(DatabaseProfile.small().getTier(), Synthesized.block(replica, "settings").path("tier").asText());
+        }
+        assertEquals("small", profile.getName());
+    }
+
+    @Test
+    void rejectsUnknownPresets(){
+        assertThrows(IllegalArgumentException.class, () -> DatabaseProfile.named("huge"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.mycompany.app.posts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.TerraformStack;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.mycompany.app.posts.PostsFixtures.DB_PASSWORD_SECRET;
+import static com.mycompany.app.posts.PostsFixtures.PROJECT;
+import static com.mycompany.app.posts.PostsFixtures.USER;
+import static com.mycompany.app.posts.PostsFixtures.VPC_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoolerTest {
+
+    private static final List<String> CLIENT_RANGES = List.of("10.8.0.0/24");
+
+    private static Environment environment(){
+        return Environment.builder("test")
+                .regions(List.of("us-east1", "europe-west1"))
+                .pooler(new PoolerSettings(true, "e2-small", 20, 1000, 2, List.of("b", "c")))
+                .build();
+    }
+
+    private static Synthesized synth(String region){
+        TerraformStack stack = PostsFixtures.stack();
+        Environment env = environment();
+        Storage storage = new Storage(stack, "storage", env, USER, PROJECT, PostsFixtures.privateVpcConnection(stack), VPC_ID, DB_PASSWORD_SECRET);
+        new Pooler(stack, "pooler", env, USER, PROJECT, region, VPC_ID, CLIENT_RANGES, storage, DB_PASSWORD_SECRET);
+        return Synthesized.of(stack);
+    }
+
+    @Test
+    void matchesSnapshot(){
+        Snapshots.assertMatches("Pooler", synth("us-east1"));
+    }
+
+    @Test
+    void runsAnAutohealingGroupOverTheConfiguredZones(){
+        Synthesized synth = synth("us-east1");
+
+        JsonNode group = synth.resource("google_compute_region_instance_group_manager");
+        assertEquals(2, group.path("target_size").asInt());
+        assertEquals("us-east1-b", group.path("distribution_policy_zones").get(0).asText());
+        assertEquals("us-east1-c", group.path("distribution_policy_zones").get(1).asText());
+        assertEquals(180, Synthesized.block(group, "auto_healing_policies").path("initial_delay_sec").asInt());
+
+        JsonNode updatePolicy = Synthesized.block(group, "update_policy");
+        assertEquals("SUBSTITUTE", updatePolicy.path("replacement_method").asText());
+        assertEquals(2, updatePolicy.path("max_surge_fixed").asInt());
+        assertEquals(0, updatePolicy.path("max_unavailable_fixed").asInt());
+
+        JsonNode forwardingRule = synth.resource("google_compute_forwarding_rule");
+        assertEquals("INTERNAL", forwardingRule.path("load_balancing_scheme").asText());
+        assertEquals("6432", forwardingRule.path("ports").get(0).asText());
+
+        JsonNode firewall = synth.resource("google_compute_firewall");
+        assertTrue(firewall.path("source_ranges").toString().contains("10.8.0.0/24"));
+        assertTrue(firewall.path("source_ranges").toString().contains("35.191.0.0/16"));
+    }
+
+    @Test
+    void readsThePasswordFromSecretManagerAtBoot(){
+        Synthesized synth = synth("us-east1");
+
+        String script = synth.resource("google_compute_instance_template").path("metadata_startup_script").asText();
+        assertTrue(script.contains("/secrets/" + DB_PASSWORD_SECRET + "/versions/latest:access"));
+        assertFalse(script.contains("secret_data"), "the password must not be rendered into the metadata");
+
+        JsonNode serviceAccount = synth.resource("google_service_account");
+        assertTrue(serviceAccount.path("account_id").asText().length() <= 30);
+        assertEquals("roles/secretmanager.secretAccessor", synth.resource("google_secret_manager_secret_iam_member").path("role").asText());
+    }
+
+    @Test
+    void secondaryRegionsGetTheirOwnSubnetAndNames(){
+        Synthesized synth = synth("europe-west1");
+
+        JsonNode subnet = synth.resource("google_compute_subnetwork");
+        assertEquals("pooler-subnet-test-" + USER + "-1", subnet.path("name").asText());
+        assertEquals("10.10.0.16/28", subnet.path("ip_cidr_range").asText());
+        assertEquals("europe-west1", synth.resource("google_compute_region_instance_group_manager").path("region").asText());
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.app.posts;
+
+import com.hashicorp.cdktf.TerraformStack;
+import com.hashicorp.cdktf.Testing;
+import com.hashicorp.cdktf.providers.google_beta.google_service_networking_connection.GoogleServiceNetworkingConnection;
+import com.hashicorp.cdktf.providers.google_beta.google_service_networking_connection.GoogleServiceNetworkingConnectionConfig;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Synthesized;
+
+import java.util.List;
+
+/**
+ * The network the constructs of the posts stack expect, for testing them one at a time.
+ */
+public final class PostsFixtures {
+
+    public static final String USER = "tester";
+    public static final String PROJECT = "test-project";
+    public static final String VPC_ID = "projects/test-project/global/networks/vpc-test";
+    public static final String DB_PASSWORD_SECRET = "db-pass";
+
+    private PostsFixtures(){
+    }
+
+    public static TerraformStack stack(){
+        return new TerraformStack(Testing.app(), "test");
+    }
+
+    public static GoogleServiceNetworkingConnection privateVpcConnection(TerraformStack stack){
+        return new GoogleServiceNetworkingConnection(stack, "vpc-connection", GoogleServiceNetworkingConnectionConfig.builder()
+                .network(VPC_ID)
+                .service("servicenetworking.googleapis.com")
+                .reservedPeeringRanges(List.of("internal-ip-address-test"))
+                .build()
+        );
+    }
+
+    public static Synthesized storage(Environment env){
+        TerraformStack stack = stack();
+        new Storage(stack, "storage", env, USER, PROJECT, privateVpcConnection(stack), VPC_ID, DB_PASSWORD_SECRET);
+        return Synthesized.of(stack);
+    }
+}
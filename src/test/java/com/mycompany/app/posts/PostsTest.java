@@ -0,0 +1,79 @@
+package com.mycompany.app.posts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.TerraformStack;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.mycompany.app.posts.PostsFixtures.DB_PASSWORD_SECRET;
+import static com.mycompany.app.posts.PostsFixtures.PROJECT;
+import static com.mycompany.app.posts.PostsFixtures.USER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostsTest {
+
+    private static Synthesized synth(Environment env){
+        TerraformStack stack = PostsFixtures.stack();
+        new Posts(stack, "posts", env, USER, PROJECT, DB_PASSWORD_SECRET);
+        return Synthesized.of(stack);
+    }
+
+    private static Environment everything(){
+        return Environment.builder("test")
+                .regions(List.of("us-east1", "europe-west1"))
+                .pooler(new PoolerSettings(true, "e2-small", 20, 1000, 2, List.of()))
+                .cache(new CacheSettings(true, "BASIC", 1, 10, 300))
+                .asyncWrites(new AsyncWriteSettings(true, 100, "* * * * *"))
+                .build();
+    }
+
+    @Test
+    void matchesSnapshot(){
+        Snapshots.assertMatches("Posts", synth(Environment.builder("test").build()));
+    }
+
+    @Test
+    void matchesSnapshotWithEverythingEnabled(){
+        Snapshots.assertMatches("Posts.everything", synth(everything()));
+    }
+
+    @Test
+    void deploysTheApiInEveryRegionThroughItsPooler(){
+        Synthesized synth = synth(everything());
+
+        assertEquals(2, synth.resources("google_compute_region_instance_group_manager").size());
+        assertEquals(2, synth.resources("google_vpc_access_connector").size());
+
+        Set<String> regions = new HashSet<>();
+        for (JsonNode function : synth.resources("google_cloudfunctions_function")) {
+            if (!function.path("name").asText().startsWith("cloud-function-api-")) {
+                continue;
+            }
+            regions.add(function.path("region").asText());
+            JsonNode variables = function.path("environment_variables");
+            assertTrue(variables.path("DB_HOST").asText().startsWith("${google_compute_forwarding_rule."));
+            assertTrue(variables.path("DB_READ_NAME").asText().endsWith("-read"));
+            assertTrue(variables.has("REDIS_HOST"));
+            assertTrue(variables.has("POSTS_TOPIC"));
+        }
+        assertEquals(Set.of("us-east1", "europe-west1"), regions);
+    }
+
+    @Test
+    void createsOneCacheMigrationAndConsumer(){
+        Synthesized synth = synth(everything());
+
+        assertEquals(1, synth.resources("google_redis_instance").size());
+        assertEquals(1, synth.resources("google_pubsub_topic").size());
+        synth.resource("google_storage_bucket", "schema-migrations-test-" + USER);
+        assertEquals(1, synth.resources("google_cloud_scheduler_job").size());
+    }
+}
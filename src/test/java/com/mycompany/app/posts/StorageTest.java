@@ -0,0 +1,51 @@
+package com.mycompany.app.posts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.mycompany.app.posts.PostsFixtures.USER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageTest {
+
+    @Test
+    void matchesSnapshot(){
+        Snapshots.assertMatches("Storage", PostsFixtures.storage(Environment.builder("test").build()));
+    }
+
+    @Test
+    void createsThePrimaryDatabaseAndUser(){
+        Synthesized synth = PostsFixtures.storage(Environment.builder("test").build());
+
+        JsonNode instance = synth.resource("google_sql_database_instance");
+        assertEquals("db-react-application-instancetest-" + USER, instance.path("name").asText());
+        assertEquals("us-east1", instance.path("region").asText());
+        assertEquals("POSTGRES_13", instance.path("database_version").asText());
+        assertEquals("REGIONAL", Synthesized.block(instance, "settings").path("availability_type").asText());
+        assertEquals(1, synth.resources("google_sql_database").size());
+        assertEquals(1, synth.resources("google_sql_user").size());
+    }
+
+    @Test
+    void addsOneReplicaPerSecondaryRegion(){
+        Synthesized synth = PostsFixtures.storage(Environment.builder("test")
+                .regions(List.of("us-east1", "europe-west1"))
+                .build()
+        );
+
+        List<JsonNode> instances = synth.resources("google_sql_database_instance");
+        assertEquals(2, instances.size());
+
+        JsonNode replica = synth.resource("google_sql_database_instance", "db-react-application-replica-europe-west1-test-" + USER);
+        assertEquals("europe-west1", replica.path("region").asText());
+        assertTrue(replica.path("master_instance_name").asText().startsWith("${google_sql_database_instance."));
+        assertEquals("ZONAL", Synthesized.block(replica, "settings").path("availability_type").asText());
+    }
+}
@@ -0,0 +1,83 @@
+package com.mycompany.app.posts.cloudfunctions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.hashicorp.cdktf.TerraformStack;
+import com.mycompany.app.Environment;
+import com.mycompany.app.Snapshots;
+import com.mycompany.app.Synthesized;
+import com.mycompany.app.posts.DatabaseEndpoint;
+import com.mycompany.app.posts.PostsFixtures;
+import com.mycompany.app.posts.Storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.mycompany.app.posts.PostsFixtures.PROJECT;
+import static com.mycompany.app.posts.PostsFixtures.USER;
+import static com.mycompany.app.posts.PostsFixtures.VPC_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CloudFunctionTest {
+
+    private static final DatabaseEndpoint DATABASE = new DatabaseEndpoint("10.0.0.2:5432", "10.0.0.3:5432,10.0.0.4:5432", "posts", "posts", "posts-user", "posts-password", Storage.EXTENSIONS);
+
+    private static Synthesized synth(FunctionScaling scaling){
+        TerraformStack stack = PostsFixtures.stack();
+        Environment env = Environment.builder("test")
+                .functionScaling(scaling)
+                .build();
+        Map<String, String> serviceVariables = new HashMap<>(){{
+            put("REDIS_HOST", "10.0.1.2:6379");
+        }};
+        new CloudFunction(stack, "cloud-function", env, USER, PROJECT, "us-east1", 0, VPC_ID, DATABASE, serviceVariables);
+        return Synthesized.of(stack);
+    }
+
+    private static FunctionScaling secondGen(){
+        return new FunctionScaling(2, "nodejs18", 256, "1", 0, 10, 80);
+    }
+
+    @Test
+    void matchesFirstGenSnapshot(){
+        Snapshots.assertMatches("CloudFunction.gen1", synth(FunctionScaling.defaults()));
+    }
+
+    @Test
+    void matchesSecondGenSnapshot(){
+        Snapshots.assertMatches("CloudFunction.gen2", synth(secondGen()));
+    }
+
+    @Test
+    void passesTheDatabaseEndpointAndServiceVariables(){
+        JsonNode function = synth(FunctionScaling.defaults()).resource("google_cloudfunctions_function");
+        JsonNode variables = function.path("environment_variables");
+
+        assertEquals("10.0.0.2:5432", variables.path("DB_HOST").asText());
+        assertEquals("10.0.0.3:5432,10.0.0.4:5432", variables.path("DB_READ_HOST").asText());
+        assertEquals("posts", variables.path("DB_READ_NAME").asText());
+        assertEquals("pg_trgm", variables.path("DB_EXTENSIONS").asText());
+        assertEquals("10.0.1.2:6379", variables.path("REDIS_HOST").asText());
+        assertEquals("cloud-function-api-test-" + USER, function.path("name").asText());
+    }
+
+    @Test
+    void secondGenSetsConcurrencyOnTheService(){
+        JsonNode function = synth(secondGen()).resource("google_cloudfunctions2_function");
+        JsonNode service = Synthesized.block(function, "service_config");
+
+        assertEquals(80, service.path("max_instance_request_concurrency").asInt());
+        assertEquals("256M", service.path("available_memory").asText());
+        assertEquals("posts", service.path("environment_variables").path("DB_NAME").asText());
+    }
+
+    @Test
+    void connectorNameFitsTheLimit(){
+        JsonNode connector = synth(FunctionScaling.defaults()).resource("google_vpc_access_connector");
+
+        assertTrue(connector.path("name").asText().length() <= 25);
+        assertEquals(CloudFunction.connectorRange(0), connector.path("ip_cidr_range").asText());
+    }
+}